@@ -0,0 +1,75 @@
+package com.verbatim.client.auth;
+
+import java.io.StringReader;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Generates the keys used by the benchmarks, so that no real credential is needed to run them.
+ */
+final class BenchmarkKeys {
+
+    private BenchmarkKeys() {
+    }
+
+    /**
+     * Generates a new RSA key pair and returns it as the content of a {@code key.json} file.
+     *
+     * @param bits the size of the RSA key, e.g. 2048 or 4096
+     * @return the JSON content of a key file holding the generated key pair
+     */
+    static String rsaKeyJson(int bits) throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(bits);
+        return keyJson(generator.generateKeyPair());
+    }
+
+    /**
+     * Generates a new EC key pair and returns it as the content of a {@code key.json} file.
+     *
+     * @param bits the size of the curve: 256 for P-256, 384 for P-384 or 521 for P-521
+     * @return the JSON content of a key file holding the generated key pair
+     */
+    static String ecKeyJson(int bits) throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(bits);
+        return keyJson(generator.generateKeyPair());
+    }
+
+    /**
+     * Generates the key pair described by the given type, e.g. {@code rsa4096} or {@code ec256},
+     * and returns it as the content of a {@code key.json} file.
+     */
+    static String keyJson(String type) throws NoSuchAlgorithmException {
+        if (type.startsWith("ec")) {
+            return ecKeyJson(Integer.parseInt(type.substring(2)));
+        }
+        return rsaKeyJson(Integer.parseInt(type.substring(3)));
+    }
+
+    private static String keyJson(KeyPair keyPair) {
+        return "{"
+                + "\"keyId\":\"BENCHMARK_KEY_ID\","
+                + "\"organizationId\":\"BENCHMARK_ORG_ID\","
+                + "\"privateKey\":\"" + pem("PRIVATE KEY", keyPair.getPrivate().getEncoded()) + "\","
+                + "\"publicKey\":\"" + pem("PUBLIC KEY", keyPair.getPublic().getEncoded()) + "\""
+                + "}";
+    }
+
+    /**
+     * Loads a key from the content of a {@code key.json} file.
+     */
+    static Key load(String json) {
+        return new KeyLoader().from(new StringReader(json)).get();
+    }
+
+    /**
+     * Encodes DER bytes as a PEM block, escaped to be embedded in a JSON string.
+     */
+    static String pem(String label, byte[] der) {
+        String body = Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(der).replace("\n", "\\n");
+        return "-----BEGIN " + label + "-----\\n" + body + "\\n-----END " + label + "-----\\n";
+    }
+}
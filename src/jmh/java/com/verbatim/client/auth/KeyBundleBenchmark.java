@@ -0,0 +1,73 @@
+package com.verbatim.client.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the start-up of a multi-tenant signer loading a directory of {@code key.json} files in a
+ * {@link KeyRing} with opening the equivalent {@link KeyBundle}, then signing for one tenant. Run with
+ * {@code -prof gc} to compare the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class KeyBundleBenchmark {
+
+    @Param({"1000"})
+    int tenants;
+
+    Path directory;
+    Path bundle;
+
+    @Setup
+    public void setUp() throws Exception {
+        String json = BenchmarkKeys.rsaKeyJson(2048);
+        directory = Files.createTempDirectory("keys");
+        Path keys = Files.createDirectory(directory.resolve("keys"));
+        for (int i = 0; i < tenants; i++) {
+            Files.writeString(keys.resolve("tenant" + i + ".json"),
+                    json.replace("BENCHMARK_KEY_ID", "KEY_" + i).replace("BENCHMARK_ORG_ID", "ORG_" + i));
+        }
+        bundle = directory.resolve("keys.bin");
+        KeyBundle.convert(keys, bundle);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public TokenFactory keyRing() throws TokenException {
+        return KeyRing.load(directory.resolve("keys")).getByOrganizationId("ORG_" + tenants / 2);
+    }
+
+    @Benchmark
+    public TokenFactory keyBundle() throws TokenException {
+        return KeyBundle.open(bundle).getByOrganizationId("ORG_" + tenants / 2);
+    }
+}
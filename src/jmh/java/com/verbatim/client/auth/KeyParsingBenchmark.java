@@ -0,0 +1,82 @@
+package com.verbatim.client.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of loading a {@code key.json} file and of parsing its PEM encoded keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyParsingBenchmark {
+
+    @Param({"2048", "4096"})
+    int bits;
+
+    String json;
+    Path file;
+    Key key;
+    TokenBuilder builder;
+
+    @Setup
+    public void setUp() throws Exception {
+        json = BenchmarkKeys.rsaKeyJson(bits);
+        file = Files.createTempFile("key", ".json");
+        Files.writeString(file, json, StandardCharsets.UTF_8);
+        key = BenchmarkKeys.load(json);
+        builder = new TokenBuilder();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Key keyLoaderFrom() {
+        return new KeyLoader().from(new StringReader(json)).get();
+    }
+
+    @Benchmark
+    public Key keyLoaderFromFile() throws IOException {
+        return new KeyLoader().from(file).get();
+    }
+
+    @Benchmark
+    public RSAPrivateKey readPKCS8PrivateKey() throws TokenException {
+        return builder.readPKCS8PrivateKey(key.getPrivateKey());
+    }
+
+    @Benchmark
+    public RSAPublicKey readX509PublicKey() throws TokenException {
+        return TokenBuilder.readX509PublicKey(key.getPublicKey());
+    }
+
+    @Benchmark
+    public SigningKey signingKey() throws TokenException {
+        return new SigningKey(key);
+    }
+}
@@ -0,0 +1,124 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.algorithms.Algorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the signature of a JWS signing input through a pooled, initialized {@link java.security.Signature}
+ * with a new {@code Signature} looked up and initialized for each token, and with java-jwt's
+ * {@link Algorithm#sign(byte[], byte[])}, on 1 and 4 threads. Run with {@code -prof gc} to compare
+ * the allocations. {@code keyFactory} and {@code pooledKeyFactory} compare the decoding of a PKCS#8
+ * private key with a new and a pooled {@link KeyFactory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureReuseBenchmark {
+
+    @Param({"rsa2048", "rsa4096", "ec256"})
+    String keyType;
+
+    JcaSigner pooled;
+    JcaSigner unpooled;
+    Algorithm algorithm;
+    byte[] header;
+    byte[] payload;
+    byte[] input;
+    byte[] pkcs8;
+    String keyAlgorithm;
+    JcaPool<KeyFactory> keyFactories;
+
+    @Setup
+    public void setUp() throws Exception {
+        SigningKey signingKey = BenchmarkKeys.load(BenchmarkKeys.keyJson(keyType)).signingKey();
+        pooled = JcaSigner.builder()
+                .keyId(signingKey.getKeyId())
+                .organizationId(signingKey.getOrganizationId())
+                .privateKey(signingKey.getPrivateKey())
+                .build();
+        unpooled = JcaSigner.builder()
+                .keyId(signingKey.getKeyId())
+                .organizationId(signingKey.getOrganizationId())
+                .privateKey(signingKey.getPrivateKey())
+                .poolSize(0)
+                .build();
+        algorithm = signingKey.getAlgorithm();
+
+        header = "eyJraWQiOiJiZW5jaG1hcmsiLCJhbGciOiJSUzUxMiIsInR5cCI6IkpXVCJ9".getBytes(StandardCharsets.US_ASCII);
+        payload = "eyJpc3MiOiJ2ZXJiYXRpbV9jbGllbnQiLCJpYXQiOjE3MDAwMDAwMDAsInN1YiI6ImJlbmNobWFyayIsImV4cCI6MTcwMDAwMzYwMCwidWlkIjoiYmVuY2htYXJrLXVzZXIifQ"
+                .getBytes(StandardCharsets.US_ASCII);
+        input = new byte[header.length + 1 + payload.length];
+        System.arraycopy(header, 0, input, 0, header.length);
+        input[header.length] = '.';
+        System.arraycopy(payload, 0, input, header.length + 1, payload.length);
+
+        pkcs8 = signingKey.getPrivateKey().getEncoded();
+        keyAlgorithm = signingKey.getPrivateKey().getAlgorithm();
+        keyFactories = new JcaPool<>(() -> KeyFactory.getInstance(keyAlgorithm), JcaPool.DEFAULT_SIZE);
+    }
+
+    @Benchmark
+    public byte[] pooled() throws GeneralSecurityException {
+        return pooled.sign(input, 0, input.length);
+    }
+
+    @Benchmark
+    public byte[] getInstance() throws GeneralSecurityException {
+        return unpooled.sign(input, 0, input.length);
+    }
+
+    /**
+     * The java-jwt signing path, which looks up a new {@code Signature} for each token.
+     */
+    @Benchmark
+    public byte[] javaJwt() {
+        return algorithm.sign(header, payload);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] pooled4Threads() throws GeneralSecurityException {
+        return pooled.sign(input, 0, input.length);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] getInstance4Threads() throws GeneralSecurityException {
+        return unpooled.sign(input, 0, input.length);
+    }
+
+    @Benchmark
+    public Object keyFactory() throws GeneralSecurityException {
+        return KeyFactory.getInstance(keyAlgorithm).generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+    }
+
+    @Benchmark
+    public Object pooledKeyFactory() throws GeneralSecurityException {
+        KeyFactory keyFactory = keyFactories.acquire();
+        try {
+            return keyFactory.generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+        } finally {
+            keyFactories.release(keyFactory);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.verbatim.client.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the signing throughput of a single shared {@link TokenFactory} with 1, 4, 16 and 64
+ * concurrent threads, to size the signing fleet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningThroughputBenchmark {
+
+    @Param({"rsa2048", "rsa4096", "ec256"})
+    String keyType;
+
+    TokenFactory factory;
+    Instant expiresAt;
+
+    @Setup
+    public void setUp() throws Exception {
+        factory = new TokenFactory(BenchmarkKeys.load(BenchmarkKeys.keyJson(keyType)));
+        expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String threads1() throws TokenException {
+        return factory.sign("benchmark-user", null, expiresAt);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String threads4() throws TokenException {
+        return factory.sign("benchmark-user", null, expiresAt);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String threads16() throws TokenException {
+        return factory.sign("benchmark-user", null, expiresAt);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String threads64() throws TokenException {
+        return factory.sign("benchmark-user", null, expiresAt);
+    }
+}
@@ -0,0 +1,107 @@
+package com.verbatim.client.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to token of the {@link Main} CLI: each invocation starts a new JVM that loads
+ * a key file, signs a token, prints it and exits.
+ * <p>
+ * The {@code jvm} parameter compares a plain JVM, a JVM started with an AppCDS archive recorded by
+ * a training run, and the same with the C1 compiler only, which suits such short-lived processes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"rsa4096", "ec256"})
+    String keyType;
+
+    @Param({"default", "appcds", "appcds-c1"})
+    String jvm;
+
+    Path directory;
+    Path keyFile;
+    List<String> command;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("startup");
+        keyFile = Files.writeString(directory.resolve("key.json"), BenchmarkKeys.keyJson(keyType), StandardCharsets.UTF_8);
+        Path archive = directory.resolve("verbatim-token.jsa");
+
+        if (!jvm.equals("default")) {
+            run(command("-XX:ArchiveClassesAtExit=" + archive));
+        }
+        switch (jvm) {
+            case "appcds":
+                command = command("-XX:SharedArchiveFile=" + archive);
+                break;
+            case "appcds-c1":
+                command = command("-XX:SharedArchiveFile=" + archive, "-XX:TieredStopAtLevel=1");
+                break;
+            default:
+                command = command();
+                break;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("verbatim-token.jsa"));
+        Files.deleteIfExists(keyFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int timeToToken() throws Exception {
+        return run(command);
+    }
+
+    private List<String> command(String... options) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xshare:auto");
+        command.addAll(List.of(options));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.add(keyFile.toString());
+        return command;
+    }
+
+    private static int run(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Main exited with " + exitCode + ": " + command);
+        }
+        return exitCode;
+    }
+}
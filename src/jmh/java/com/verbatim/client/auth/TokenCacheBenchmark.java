@@ -0,0 +1,57 @@
+package com.verbatim.client.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of serving tokens from a {@link TokenCache}, for a single user and for
+ * many users spread over a bounded cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenCacheBenchmark {
+
+    static final int USERS = 1_000;
+
+    TokenFactory factory;
+    TokenCache cache;
+    String[] userIds;
+
+    @Setup
+    public void setUp() throws Exception {
+        factory = new TokenFactory(BenchmarkKeys.load(BenchmarkKeys.rsaKeyJson(2048)));
+        cache = TokenCache.builder().maximumSize(USERS).build();
+        userIds = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = "benchmark-user-" + i;
+            cache.get(factory, userIds[i], null);
+        }
+    }
+
+    @Benchmark
+    public String hit() throws TokenException {
+        return cache.get(factory, userIds[0], null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String hitManyUsers() throws TokenException {
+        return cache.get(factory, userIds[ThreadLocalRandom.current().nextInt(USERS)], null);
+    }
+}
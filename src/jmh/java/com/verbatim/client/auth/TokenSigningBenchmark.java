@@ -0,0 +1,81 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of signing a single token, with and without user claims, with RSA and EC keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenSigningBenchmark {
+
+    @Param({"rsa2048", "rsa4096", "ec256", "ec384"})
+    String keyType;
+
+    Key key;
+    TokenFactory factory;
+    Instant expiresAt;
+
+    @Setup
+    public void setUp() throws Exception {
+        key = BenchmarkKeys.load(BenchmarkKeys.keyJson(keyType));
+        factory = new TokenFactory(key);
+        expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+    }
+
+    @Benchmark
+    public String build() throws TokenException {
+        return new TokenBuilder().key(key).expiresAt(expiresAt).build();
+    }
+
+    @Benchmark
+    public String buildWithClaims() throws TokenException {
+        return new TokenBuilder()
+                .key(key)
+                .expiresAt(expiresAt)
+                .userId("benchmark-user")
+                .userEmail("benchmark@verbatim-ai.com")
+                .build();
+    }
+
+    @Benchmark
+    public String factorySign() throws TokenException {
+        return factory.sign("benchmark-user", "benchmark@verbatim-ai.com", expiresAt);
+    }
+
+    /**
+     * The former signing path, through JWTCreator and Jackson, to compare with {@link #factorySign()}.
+     */
+    @Benchmark
+    public String jwtCreatorSign() throws TokenException {
+        SigningKey signingKey = factory.getSigningKey();
+        return JWT.create()
+                .withIssuer(TokenFactory.ISSUER)
+                .withIssuedAt(Instant.now())
+                .withSubject(signingKey.getOrganizationId())
+                .withKeyId(signingKey.getKeyId())
+                .withExpiresAt(expiresAt)
+                .withClaim(TokenFactory.CLAIMS_USER_ID, "benchmark-user")
+                .withClaim(TokenFactory.CLAIMS_USER_EMAIL, "benchmark@verbatim-ai.com")
+                .sign(signingKey.getAlgorithm());
+    }
+}
@@ -0,0 +1,173 @@
+package com.verbatim.client.auth;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The AsyncTokenSigner class signs tokens off the caller thread, for callers that must not block,
+ * such as virtual threads or reactive pipelines.
+ * <p>
+ * Signatures run on a bounded pool with one thread per available processor, shared by all the
+ * signers that are not given an executor of their own. When the pool queue is full, the returned
+ * future fails with a {@link java.util.concurrent.RejectedExecutionException}. Concurrent requests
+ * for the same claim set and expiration share a single signature. No lock is ever held while
+ * signing, so callers on virtual threads never pin their carrier thread.
+ * <p>
+ * To serve cached tokens asynchronously, see {@link TokenCache#getAsync(TokenFactory, String, String)}.
+ */
+public final class AsyncTokenSigner {
+
+    private final TokenFactory factory;
+    private final Executor executor;
+    private final ConcurrentHashMap<Request, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an asynchronous signer running on the shared signing pool.
+     *
+     * @param factory the factory signing the tokens. Must not be null.
+     * @throws NullPointerException if {@code factory} is null.
+     */
+    public AsyncTokenSigner(TokenFactory factory) {
+        this(factory, SigningPool.shared());
+    }
+
+    /**
+     * Creates an asynchronous signer running on the given executor.
+     *
+     * @param factory  the factory signing the tokens. Must not be null.
+     * @param executor the executor running the signatures. Must not be null.
+     * @throws NullPointerException if {@code factory} or {@code executor} is null.
+     */
+    public AsyncTokenSigner(TokenFactory factory, Executor executor) {
+        this.factory = Objects.requireNonNull(factory, "factory cannot be null");
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+    }
+
+    /**
+     * Signs a token without user claims.
+     *
+     * @param expiresAt the expiration time of the token. Must not be null.
+     * @return a future completed with the signed JWT, or with the {@link TokenException} raised while signing.
+     */
+    public CompletableFuture<String> sign(Instant expiresAt) {
+        return sign(null, null, expiresAt);
+    }
+
+    /**
+     * Signs a token with the given user claims. While a signature of the same claims and expiration
+     * is in progress, its result is shared instead of signing again.
+     *
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @param expiresAt the expiration time of the token. Must not be null.
+     * @return a future completed with the signed JWT, or with the exception raised while signing.
+     * Completing or cancelling it does not affect the other callers sharing the signature.
+     */
+    public CompletableFuture<String> sign(String userId, String userEmail, Instant expiresAt) {
+        if (expiresAt == null) {
+            return CompletableFuture.failedFuture(new TokenException("ExpireAt not set"));
+        }
+        Request request = new Request(userId, userEmail, expiresAt);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> current = inFlight.putIfAbsent(request, future);
+        if (current != null) {
+            return current.copy();
+        }
+        try {
+            executor.execute(() -> sign(request, future));
+        } catch (RuntimeException e) {
+            inFlight.remove(request, future);
+            future.completeExceptionally(e);
+        }
+        return future.copy();
+    }
+
+    /**
+     * Returns a publisher signing a token with the given user claims for each subscriber.
+     * <p>
+     * The signature starts on the first request of a subscriber, which then receives the token
+     * followed by {@code onComplete}, or {@code onError} if the signature fails.
+     *
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @param expiresAt the expiration time of the token. Must not be null.
+     * @return a publisher of a single token.
+     */
+    public Flow.Publisher<String> publisher(String userId, String userEmail, Instant expiresAt) {
+        return subscriber -> {
+            Objects.requireNonNull(subscriber, "subscriber cannot be null");
+            subscriber.onSubscribe(new SingleSubscription(subscriber, () -> sign(userId, userEmail, expiresAt)));
+        };
+    }
+
+    private void sign(Request request, CompletableFuture<String> future) {
+        try {
+            String token = factory.sign(request.userId, request.userEmail, request.expiresAt);
+            inFlight.remove(request, future);
+            future.complete(token);
+        } catch (Throwable e) {
+            inFlight.remove(request, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    @Value
+    private static class Request {
+        String userId;
+        String userEmail;
+        Instant expiresAt;
+    }
+
+    /**
+     * Subscription delivering the result of a single future.
+     */
+    private static final class SingleSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super String> subscriber;
+        private final Supplier<CompletableFuture<String>> source;
+        private final AtomicBoolean requested = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        SingleSubscription(Flow.Subscriber<? super String> subscriber, Supplier<CompletableFuture<String>> source) {
+            this.subscriber = subscriber;
+            this.source = source;
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled || !requested.compareAndSet(false, true)) {
+                return;
+            }
+            if (n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("request must be positive: " + n));
+                return;
+            }
+            source.get().whenComplete((token, error) -> {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                if (error != null) {
+                    subscriber.onError(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                } else {
+                    subscriber.onNext(token);
+                    subscriber.onComplete();
+                }
+            });
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
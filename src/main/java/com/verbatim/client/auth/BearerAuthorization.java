@@ -0,0 +1,307 @@
+package com.verbatim.client.auth;
+
+import java.io.IOException;
+import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The BearerAuthorization class authenticates HTTP requests to the Verbatim APIs with the
+ * {@code Authorization: Bearer <token>} header.
+ * <p>
+ * Tokens come from a {@link TokenCache}, so a token is only signed when the previous one is about to
+ * expire, and the header value is rendered once per token: on the hot path, {@link #header()} returns
+ * the same String until the token rotates. Requests sent through {@link #send(HttpClient, HttpRequest.Builder,
+ * HttpResponse.BodyHandler)} or {@link #sendAsync(HttpClient, HttpRequest.Builder, HttpResponse.BodyHandler)}
+ * are sent again, once, with a newly signed token when the server answers {@code 401 Unauthorized}.
+ * <p>
+ * With {@link java.net.HttpURLConnection}, see {@link #authorize(URLConnection)}. Instances are thread-safe
+ * and meant to be shared.
+ */
+public final class BearerAuthorization {
+
+    /**
+     * Name of the HTTP header carrying the token
+     */
+    public static final String AUTHORIZATION = "Authorization";
+
+    static final String BEARER = "Bearer ";
+    static final int UNAUTHORIZED = 401;
+
+    private final TokenFactory factory;
+    private final TokenCache cache;
+    private final String userId;
+    private final String userEmail;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The last token and its rendered header
+     */
+    private volatile Rendered rendered;
+
+    /**
+     * The last header rejected by a server, whose token has already been invalidated
+     */
+    private String rejected;
+
+    private BearerAuthorization(Builder builder) {
+        this.factory = builder.factory;
+        this.cache = builder.cache;
+        this.userId = builder.userId;
+        this.userEmail = builder.userEmail;
+    }
+
+    /**
+     * @return a new builder of {@link BearerAuthorization} instances.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the value of the {@code Authorization} header, {@code Bearer} followed by a valid token.
+     * The same String is returned as long as the cached token is.
+     *
+     * @return the header value.
+     * @throws TokenException if a token has to be signed and the signature fails.
+     */
+    public String header() throws TokenException {
+        return render(cache.get(factory, userId, userEmail));
+    }
+
+    /**
+     * Returns the value of the {@code Authorization} header without blocking, see {@link TokenCache#getAsync(TokenFactory, String, String)}.
+     *
+     * @return a future completed with the header value.
+     */
+    public CompletableFuture<String> headerAsync() {
+        return cache.getAsync(factory, userId, userEmail).thenApply(this::render);
+    }
+
+    /**
+     * Sets the {@code Authorization} header of a request.
+     *
+     * @param request the request builder. Must not be null.
+     * @return the given request builder.
+     * @throws TokenException if a token has to be signed and the signature fails.
+     */
+    public HttpRequest.Builder authorize(HttpRequest.Builder request) throws TokenException {
+        Objects.requireNonNull(request, "request cannot be null");
+        return request.setHeader(AUTHORIZATION, header());
+    }
+
+    /**
+     * Sets the {@code Authorization} header of a connection, before it is connected.
+     *
+     * @param connection the connection. Must not be null.
+     * @return the given connection.
+     * @throws TokenException if a token has to be signed and the signature fails.
+     */
+    public <C extends URLConnection> C authorize(C connection) throws TokenException {
+        Objects.requireNonNull(connection, "connection cannot be null");
+        connection.setRequestProperty(AUTHORIZATION, header());
+        return connection;
+    }
+
+    /**
+     * Invalidates the token of a header rejected by a server, so that the next header carries a newly
+     * signed token. Concurrent calls for the same rejected header invalidate the token once.
+     *
+     * @param rejectedHeader the rejected header value. Must not be null.
+     */
+    public void reject(String rejectedHeader) {
+        Objects.requireNonNull(rejectedHeader, "rejectedHeader cannot be null");
+        lock.lock();
+        try {
+            if (rejectedHeader.equals(rejected)) {
+                return;
+            }
+            rejected = rejectedHeader;
+            cache.invalidate(factory, userId, userEmail);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends an authenticated request, and sends it once more with a newly signed token if the server
+     * answers {@code 401 Unauthorized}. The body publisher of the request must support being sent twice,
+     * as those of {@link HttpRequest.BodyPublishers} do.
+     *
+     * @param client  the HTTP client. Must not be null.
+     * @param request the request builder, whose {@code Authorization} header is set. Must not be null.
+     * @param handler the handler of the response body. Must not be null.
+     * @return the response, which is the response to the second attempt if the first one was rejected.
+     * @throws IOException          if the request cannot be sent.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the response.
+     * @throws TokenException       if a token has to be signed and the signature fails.
+     */
+    public <T> HttpResponse<T> send(HttpClient client, HttpRequest.Builder request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException, TokenException {
+        Objects.requireNonNull(client, "client cannot be null");
+        Objects.requireNonNull(request, "request cannot be null");
+        Objects.requireNonNull(handler, "handler cannot be null");
+        String header = header();
+        HttpResponse<T> response = client.send(request.setHeader(AUTHORIZATION, header).build(), handler);
+        if (response.statusCode() != UNAUTHORIZED) {
+            return response;
+        }
+        discard(response);
+        reject(header);
+        return client.send(request.setHeader(AUTHORIZATION, header()).build(), handler);
+    }
+
+    /**
+     * Sends an authenticated request without blocking, see {@link #send(HttpClient, HttpRequest.Builder, HttpResponse.BodyHandler)}.
+     * The request builder is copied, and can be reused by the caller.
+     *
+     * @param client  the HTTP client. Must not be null.
+     * @param request the request builder. Must not be null.
+     * @param handler the handler of the response body. Must not be null.
+     * @return a future completed with the response, or with the exception raised while signing or sending.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpClient client, HttpRequest.Builder request,
+                                                           HttpResponse.BodyHandler<T> handler) {
+        Objects.requireNonNull(client, "client cannot be null");
+        Objects.requireNonNull(request, "request cannot be null");
+        Objects.requireNonNull(handler, "handler cannot be null");
+        HttpRequest.Builder copy = request.copy();
+        return headerAsync().thenCompose(header -> client.sendAsync(copy.setHeader(AUTHORIZATION, header).build(), handler)
+                .thenCompose(response -> {
+                    if (response.statusCode() != UNAUTHORIZED) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    discard(response);
+                    reject(header);
+                    return headerAsync().thenCompose(retry -> client.sendAsync(copy.setHeader(AUTHORIZATION, retry).build(), handler));
+                }));
+    }
+
+    private String render(String token) {
+        Rendered current = rendered;
+        // the cache returns the same instance until the token rotates
+        if (current != null && current.token == token) {
+            return current.header;
+        }
+        Rendered next = new Rendered(token, BEARER + token);
+        rendered = next;
+        return next.header;
+    }
+
+    /**
+     * Releases the body of a rejected response, when it is a stream or another closeable resource.
+     */
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) response.body()).close();
+            } catch (Exception e) {
+                // nothing to release
+            }
+        }
+    }
+
+    private static final class Rendered {
+        final String token;
+        final String header;
+
+        Rendered(String token, String header) {
+            this.token = token;
+            this.header = header;
+        }
+    }
+
+    /**
+     * Builder of {@link BearerAuthorization} instances.
+     */
+    public static final class Builder {
+        private TokenFactory factory;
+        private TokenCache cache;
+        private String userId;
+        private String userEmail;
+
+        private Builder() {
+        }
+
+        /**
+         * Signs the tokens with the given key.
+         *
+         * @param key the key. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws TokenException if the public or private key cannot be parsed.
+         */
+        public Builder key(Key key) throws TokenException {
+            Objects.requireNonNull(key, "key cannot be null");
+            this.factory = new TokenFactory(key);
+            return this;
+        }
+
+        /**
+         * Signs the tokens with the given factory.
+         *
+         * @param factory the factory. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder factory(TokenFactory factory) {
+            this.factory = Objects.requireNonNull(factory, "factory cannot be null");
+            return this;
+        }
+
+        /**
+         * Keeps the tokens in the given cache, a new cache with the default settings otherwise.
+         *
+         * @param cache the cache. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder cache(TokenCache cache) {
+            this.cache = Objects.requireNonNull(cache, "cache cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the user ID claim of the tokens.
+         *
+         * @param userId the unique identifier of the user. Must not be null or blank.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder userId(String userId) {
+            Objects.requireNonNull(userId, "userId cannot be null");
+            TokenFactory.assertUserId(userId);
+            this.userId = userId;
+            return this;
+        }
+
+        /**
+         * Sets the user email claim of the tokens.
+         *
+         * @param userEmail the email of the user. Must not be null or blank.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder userEmail(String userEmail) {
+            Objects.requireNonNull(userEmail, "userEmail cannot be null");
+            TokenFactory.assertUserEmail(userEmail);
+            this.userEmail = userEmail;
+            return this;
+        }
+
+        /**
+         * Builds the authorization.
+         *
+         * @return a new authorization.
+         * @throws RuntimeException if neither a key nor a factory has been given.
+         */
+        public BearerAuthorization build() {
+            if (factory == null) {
+                throw new RuntimeException("Key not set");
+            }
+            if (cache == null) {
+                cache = TokenCache.builder().clock(factory.getClock()).build();
+            }
+            return new BearerAuthorization(this);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.verbatim.client.auth;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * The CoarseClock class is a {@link Clock} ticking in whole seconds, the precision of the {@code iat}
+ * and {@code exp} claims of JWTs.
+ * <p>
+ * The current second is cached, so reading the time creates a new {@link Instant} at most once per
+ * second. Since all the instants of a second are equal, tokens signed within the
+ * same second for the same claims and expiration are byte-identical with RSA keys (ECDSA signatures
+ * are randomized), which makes them safe to cache or to share between callers.
+ * <p>
+ * Instances are thread-safe. Give the same clock to {@link TokenFactory}, {@link TokenBuilder},
+ * {@link TokenCache} and {@link TokenVerifier}, so that they agree on the current time.
+ */
+public final class CoarseClock extends Clock {
+
+    private static final CoarseClock SYSTEM_UTC = new CoarseClock(Clock.systemUTC());
+
+    private final Clock base;
+
+    /**
+     * The last instant read, truncated to the second
+     */
+    private volatile Instant current = Instant.EPOCH;
+
+    private CoarseClock(Clock base) {
+        this.base = base;
+    }
+
+    /**
+     * @return the shared coarse clock following the system clock, in the UTC time zone.
+     */
+    public static CoarseClock systemUTC() {
+        return SYSTEM_UTC;
+    }
+
+    /**
+     * Returns a coarse clock following the given clock, e.g. a fixed clock in tests.
+     *
+     * @param base the clock giving the time. Must not be null.
+     * @return the coarse clock.
+     * @throws NullPointerException if {@code base} is null.
+     */
+    public static CoarseClock of(Clock base) {
+        Objects.requireNonNull(base, "base cannot be null");
+        return base instanceof CoarseClock ? (CoarseClock) base : new CoarseClock(base);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return base.getZone();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(base.getZone()) ? this : new CoarseClock(base.withZone(zone));
+    }
+
+    @Override
+    public long millis() {
+        return instant().getEpochSecond() * 1000;
+    }
+
+    @Override
+    public Instant instant() {
+        long seconds = Math.floorDiv(base.millis(), 1000);
+        Instant last = current;
+        if (last.getEpochSecond() == seconds) {
+            return last;
+        }
+        // racing threads may both create the instant of a new second, which is harmless
+        Instant now = Instant.ofEpochSecond(seconds);
+        current = now;
+        return now;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CoarseClock && base.equals(((CoarseClock) other).base);
+    }
+
+    @Override
+    public int hashCode() {
+        return base.hashCode() ^ 1;
+    }
+
+    @Override
+    public String toString() {
+        return "CoarseClock[" + base + "]";
+    }
+}
@@ -0,0 +1,99 @@
+package com.verbatim.client.auth;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Striped pool of JCA engine instances, such as initialized {@link java.security.Signature} or
+ * {@link java.security.KeyFactory} objects, which are not thread-safe but are expensive to look up
+ * and initialize.
+ * <p>
+ * A thread takes an instance from the slot of its stripe, or from the next non-empty slots, and
+ * gives it back to the first empty slot from its stripe; no lock is held. When every slot is taken
+ * a new instance is created, and an instance given back to a full pool is dropped, so the pool never
+ * blocks and never holds more than its number of slots. Unlike a {@link ThreadLocal}, the pool is
+ * shared by all threads and is collected with its owner, which suits virtual threads and key rotation.
+ *
+ * @param <T> the type of the pooled instances.
+ */
+final class JcaPool<T> {
+
+    /**
+     * Creates the instances of a pool.
+     */
+    interface Factory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    /**
+     * The default number of slots: twice the number of processors, so that each signing thread
+     * usually finds an instance in its own stripe
+     */
+    static final int DEFAULT_SIZE = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1);
+
+    private final Factory<T> factory;
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+
+    /**
+     * @param factory creates the instances.
+     * @param size    the number of slots, rounded up to a power of two. 0 disables pooling.
+     */
+    JcaPool(Factory<T> factory, int size) {
+        this.factory = factory;
+        int slotCount = size == 0 ? 0 : Integer.highestOneBit(Math.max(1, size) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * @return the number of slots of this pool, 0 if pooling is disabled.
+     */
+    int size() {
+        return slots.length();
+    }
+
+    /**
+     * Takes an instance from the pool, or creates one if the pool is empty.
+     *
+     * @return an instance, owned by the caller until given back by {@link #release(Object)}.
+     * @throws GeneralSecurityException if an instance cannot be created.
+     */
+    T acquire() throws GeneralSecurityException {
+        int length = slots.length();
+        if (length > 0) {
+            int stripe = stripe();
+            for (int i = 0; i < length; i++) {
+                T instance = slots.getAndSet((stripe + i) & mask, null);
+                if (instance != null) {
+                    return instance;
+                }
+            }
+        }
+        return factory.create();
+    }
+
+    /**
+     * Gives back an instance taken by {@link #acquire()}. It must be in its initial state: instances
+     * left in an unknown state by a failure must not be given back.
+     *
+     * @param instance the instance.
+     */
+    void release(T instance) {
+        int length = slots.length();
+        if (length > 0) {
+            int stripe = stripe();
+            for (int i = 0; i < length; i++) {
+                if (slots.compareAndSet((stripe + i) & mask, null, instance)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
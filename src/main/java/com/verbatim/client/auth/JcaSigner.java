@@ -0,0 +1,324 @@
+package com.verbatim.client.auth;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.util.Objects;
+
+/**
+ * The JcaSigner class is the {@link Signer} computing signatures with a {@link PrivateKey} through the
+ * {@link Signature} API of the JCA.
+ * <p>
+ * The private key can be held in memory, e.g. parsed from a {@link Key}, or read from a
+ * {@link KeyStore} entry, such as a PKCS12 file or the PKCS11 key store of a hardware or soft HSM
+ * whose keys never leave the module. The signatures are computed by the given {@link Provider}, or
+ * by the first installed provider supporting the key when none is given.
+ * <p>
+ * Looking up a {@link Signature} and initializing it with the key costs an allocation-heavy provider
+ * search on every token, so initialized signatures are kept in a striped pool and only fed the data
+ * of each token: {@link Signature#sign()} resets a signature to its initialized state. The pool size
+ * can be set with {@link Builder#poolSize(int)}.
+ * <p>
+ * Instances are thread-safe.
+ */
+@Getter
+public final class JcaSigner implements Signer {
+
+    private final String keyId;
+
+    private final String organizationId;
+
+    private final SigningAlgorithm algorithm;
+
+    private final PrivateKey privateKey;
+
+    private final PublicKey publicKey;
+
+    /**
+     * The provider of the signatures, or null to select it from the private key
+     */
+    private final Provider provider;
+
+    /**
+     * The signatures initialized with the private key
+     */
+    @Getter(AccessLevel.NONE)
+    private final JcaPool<Signature> signatures;
+
+    private JcaSigner(Builder builder, SigningAlgorithm algorithm) {
+        this.keyId = builder.keyId;
+        this.organizationId = builder.organizationId;
+        this.algorithm = algorithm;
+        this.privateKey = builder.privateKey;
+        this.publicKey = builder.publicKey;
+        this.provider = builder.provider;
+        this.signatures = new JcaPool<>(this::newSignature, builder.poolSize);
+    }
+
+    /**
+     * @return a new builder of {@link JcaSigner} instances.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public byte[] sign(byte[] input, int offset, int length) throws GeneralSecurityException {
+        Signature signature = signatures.acquire();
+        signature.update(input, offset, length);
+        byte[] signed = signature.sign();
+        // a signature that failed is in an unknown state and is not given back
+        signatures.release(signature);
+        return algorithm.isEc() ? JwtEncoder.derToJose(signed, algorithm.getEcSignatureLength()) : signed;
+    }
+
+    /**
+     * @return the number of initialized signatures this signer can keep, 0 if they are not reused.
+     */
+    int getPoolSize() {
+        return signatures.size();
+    }
+
+    private Signature newSignature() throws GeneralSecurityException {
+        Signature signature = provider == null
+                ? Signature.getInstance(algorithm.getJcaName())
+                : Signature.getInstance(algorithm.getJcaName(), provider);
+        signature.initSign(privateKey);
+        return signature;
+    }
+
+    @Override
+    public String toString() {
+        return "JcaSigner(keyId=" + keyId + ", organizationId=" + organizationId + ", algorithm=" + algorithm
+                + ", provider=" + (provider == null ? null : provider.getName()) + ")";
+    }
+
+    /**
+     * Builder of {@link JcaSigner} instances.
+     */
+    public static final class Builder {
+        private String keyId;
+        private String organizationId;
+        private SigningAlgorithm algorithm;
+        private PrivateKey privateKey;
+        private PublicKey publicKey;
+        private Provider provider;
+        private int poolSize = JcaPool.DEFAULT_SIZE;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the ID of the key, used as the {@code kid} header of the tokens.
+         *
+         * @param keyId the ID of the key. Must not be null or blank.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder keyId(String keyId) {
+            this.keyId = Objects.requireNonNull(keyId, "keyId cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the ID of the organization, used as the {@code sub} claim of the tokens.
+         *
+         * @param organizationId the ID of the organization. Must not be null or blank.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder organizationId(String organizationId) {
+            this.organizationId = Objects.requireNonNull(organizationId, "organizationId cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the JWS algorithm of the signatures. When not set, it is chosen from the key, see
+         * {@link SigningAlgorithm}; it must be set for keys that do not expose their type, such as
+         * the sensitive keys of a PKCS11 token whose certificate is unknown.
+         *
+         * @param algorithm the algorithm. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder algorithm(SigningAlgorithm algorithm) {
+            this.algorithm = Objects.requireNonNull(algorithm, "algorithm cannot be null");
+            return this;
+        }
+
+        /**
+         * Signs with a private key held in memory.
+         *
+         * @param privateKey the private key. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder privateKey(PrivateKey privateKey) {
+            this.privateKey = Objects.requireNonNull(privateKey, "privateKey cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the public key verifying the signatures, see {@link Signer#getPublicKey()}.
+         *
+         * @param publicKey the public key. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder publicKey(PublicKey publicKey) {
+            this.publicKey = Objects.requireNonNull(publicKey, "publicKey cannot be null");
+            return this;
+        }
+
+        /**
+         * Signs with the private key of a key store entry. The public key is read from the certificate
+         * of the entry, if any. The key store must be loaded.
+         *
+         * @param keyStore the key store. Must not be null.
+         * @param alias    the alias of the private key entry. Must not be null.
+         * @param password the password of the entry, or null if it has none. Not retained.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws TokenException if the entry does not exist, is not a private key or cannot be recovered.
+         */
+        public Builder keyStore(KeyStore keyStore, String alias, char[] password) throws TokenException {
+            Objects.requireNonNull(keyStore, "keyStore cannot be null");
+            Objects.requireNonNull(alias, "alias cannot be null");
+            try {
+                java.security.Key key = keyStore.getKey(alias, password);
+                if (key == null) {
+                    throw new TokenException("No key " + alias + " in the " + keyStore.getType() + " key store");
+                }
+                if (!(key instanceof PrivateKey)) {
+                    throw new TokenException("Key " + alias + " of the " + keyStore.getType() + " key store is not a private key");
+                }
+                this.privateKey = (PrivateKey) key;
+                Certificate certificate = keyStore.getCertificate(alias);
+                this.publicKey = certificate == null ? null : certificate.getPublicKey();
+            } catch (GeneralSecurityException e) {
+                throw new TokenException(e);
+            }
+            return this;
+        }
+
+        /**
+         * Signs with the private key of an entry of a PKCS12 file, see {@link #keyStore(KeyStore, String, char[])}.
+         *
+         * @param file     the PKCS12 file. Must not be null.
+         * @param alias    the alias of the private key entry. Must not be null.
+         * @param password the password of the file and of the entry. Not retained.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws TokenException if the file cannot be read or decrypted, or if the entry cannot be recovered.
+         */
+        public Builder pkcs12(Path file, String alias, char[] password) throws TokenException {
+            Objects.requireNonNull(file, "file cannot be null");
+            KeyStore keyStore;
+            try (InputStream input = Files.newInputStream(file)) {
+                keyStore = KeyStore.getInstance("PKCS12");
+                keyStore.load(input, password);
+            } catch (IOException | GeneralSecurityException e) {
+                throw new TokenException(e);
+            }
+            return keyStore(keyStore, alias, password);
+        }
+
+        /**
+         * Computes the signatures with the given provider, e.g. a configured SunPKCS11 provider.
+         *
+         * @param provider the provider. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder provider(Provider provider) {
+            this.provider = Objects.requireNonNull(provider, "provider cannot be null");
+            return this;
+        }
+
+        /**
+         * Computes the signatures with the installed provider of the given name.
+         *
+         * @param name the name of an installed provider, e.g. {@code SunRsaSign} or {@code SunEC}. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if no provider of this name is installed.
+         */
+        public Builder provider(String name) {
+            Objects.requireNonNull(name, "name cannot be null");
+            Provider installed = Security.getProvider(name);
+            if (installed == null) {
+                throw new RuntimeException("No security provider " + name + " is installed");
+            }
+            this.provider = installed;
+            return this;
+        }
+
+        /**
+         * Sets the number of initialized signatures kept for reuse, twice the number of processors by default.
+         * Set it to 0 for providers whose signatures must not outlive a single token.
+         *
+         * @param poolSize the number of signatures kept, rounded up to a power of two. Must not be negative.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code poolSize} is negative.
+         */
+        public Builder poolSize(int poolSize) {
+            if (poolSize < 0) {
+                throw new RuntimeException("poolSize cannot be negative");
+            }
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * Builds the signer, checking that the keys match the algorithm and that the provider supports it.
+         *
+         * @return the signer.
+         * @throws TokenException   if the algorithm cannot be chosen, or does not match the keys or the provider.
+         * @throws RuntimeException if the key ID, the organization ID or the private key is not set.
+         */
+        public JcaSigner build() throws TokenException {
+            if (keyId == null || keyId.isBlank()) {
+                throw new RuntimeException("keyId cannot be empty");
+            }
+            if (organizationId == null || organizationId.isBlank()) {
+                throw new RuntimeException("organizationId cannot be empty");
+            }
+            if (privateKey == null) {
+                throw new RuntimeException("privateKey not set");
+            }
+
+            SigningAlgorithm chosen = algorithm;
+            if (chosen == null) {
+                if (privateKey instanceof RSAKey || privateKey instanceof ECKey) {
+                    chosen = SigningAlgorithm.of(privateKey);
+                } else if (publicKey != null) {
+                    chosen = SigningAlgorithm.of(publicKey);
+                } else {
+                    throw new TokenException("The algorithm of the " + privateKey.getAlgorithm() + " key " + keyId + " must be set");
+                }
+            }
+            check(chosen, privateKey);
+            if (publicKey != null) {
+                check(chosen, publicKey);
+            }
+            if (provider != null && provider.getService("Signature", chosen.getJcaName()) == null) {
+                throw new TokenException("Provider " + provider.getName() + " does not support " + chosen.getJcaName());
+            }
+            return new JcaSigner(this, chosen);
+        }
+
+        private static void check(SigningAlgorithm algorithm, java.security.Key key) throws TokenException {
+            if (!(algorithm.isEc() ? "EC" : "RSA").equals(key.getAlgorithm())) {
+                throw new TokenException("Algorithm " + algorithm + " requires an " + (algorithm.isEc() ? "EC" : "RSA") + " key");
+            }
+            if (key instanceof ECKey && SigningAlgorithm.of(key) != algorithm) {
+                throw new TokenException("Algorithm " + algorithm + " does not match the curve of the EC key");
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.verbatim.client.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SignatureException;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * The JwtEncoder class serializes and signs the fixed claim set of Verbatim tokens without going
+ * through {@code JWTCreator}, its claim maps and its Jackson serialization.
+ * <p>
+ * The header segment only depends on the key, so it is encoded once per key. The payload is written
+ * straight into a per-thread byte buffer, Base64URL encoded in place and handed to the {@link Signer}
+ * from that same buffer; the only String created is the token itself.
+ * <p>
+ * The output is byte-compatible with {@code JWTCreator}: same header and claim order, and the same
+ * JSON escaping as Jackson, which is what java-jwt uses. Instances are immutable and thread-safe.
+ */
+final class JwtEncoder {
+
+    private static final byte[] BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] ISSUED_AT = ascii("{\"iss\":\"" + TokenFactory.ISSUER + "\",\"iat\":");
+    private static final byte[] SUBJECT = ascii(",\"sub\":");
+    private static final byte[] EXPIRES_AT = ascii(",\"exp\":");
+    private static final byte[] USER_ID = ascii(",\"" + TokenFactory.CLAIMS_USER_ID + "\":");
+    private static final byte[] USER_EMAIL = ascii(",\"" + TokenFactory.CLAIMS_USER_EMAIL + "\":");
+    private static final byte[] JWT_ID = ascii(",\"" + TokenFactory.CLAIMS_JWT_ID + "\":");
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final Signer signer;
+
+    /**
+     * The Base64URL encoded header segment, followed by the '.' separator
+     */
+    private final byte[] header;
+
+    /**
+     * The {@code ,"sub":"organizationId","exp":} fragment of the payload
+     */
+    private final byte[] subjectAndExpiresAt;
+
+    JwtEncoder(Signer signer) {
+        this.signer = signer;
+
+        ByteArray json = new ByteArray(64);
+        json.append(ascii("{\"kid\":"));
+        appendString(json, signer.getKeyId());
+        json.append(ascii(",\"alg\":\"" + signer.getAlgorithm().name() + "\",\"typ\":\"JWT\"}"));
+        ByteArray segment = new ByteArray(base64UrlLength(json.length) + 1);
+        appendBase64Url(segment, json.bytes, 0, json.length);
+        segment.append((byte) '.');
+        this.header = segment.toArray();
+
+        ByteArray fragment = new ByteArray(64);
+        fragment.append(SUBJECT);
+        appendString(fragment, signer.getOrganizationId());
+        fragment.append(EXPIRES_AT);
+        this.subjectAndExpiresAt = fragment.toArray();
+    }
+
+    /**
+     * Serializes and signs a token.
+     *
+     * @param userId    the user ID claim, or null to omit it
+     * @param userEmail the user email claim, or null to omit it
+     * @param issuedAt  the issue time of the token
+     * @param expiresAt the expiration time of the token
+     * @return the signed token
+     * @throws GeneralSecurityException if the signature fails
+     */
+    String encode(String userId, String userEmail, Instant issuedAt, Instant expiresAt) throws GeneralSecurityException {
+        return encode(userId, userEmail, null, issuedAt, expiresAt);
+    }
+
+    /**
+     * Serializes and signs a token.
+     *
+     * @param userId    the user ID claim, or null to omit it
+     * @param userEmail the user email claim, or null to omit it
+     * @param jwtId     the JWT ID claim, or null to omit it
+     * @param issuedAt  the issue time of the token
+     * @param expiresAt the expiration time of the token
+     * @return the signed token
+     * @throws GeneralSecurityException if the signature fails
+     */
+    String encode(String userId, String userEmail, String jwtId, Instant issuedAt, Instant expiresAt) throws GeneralSecurityException {
+        Buffers buffers = BUFFERS.get();
+
+        ByteArray payload = buffers.payload;
+        payload.length = 0;
+        payload.append(ISSUED_AT);
+        appendLong(payload, issuedAt.getEpochSecond());
+        payload.append(subjectAndExpiresAt);
+        appendLong(payload, expiresAt.getEpochSecond());
+        if (userId != null) {
+            payload.append(USER_ID);
+            appendString(payload, userId);
+        }
+        if (userEmail != null) {
+            payload.append(USER_EMAIL);
+            appendString(payload, userEmail);
+        }
+        if (jwtId != null) {
+            payload.append(JWT_ID);
+            appendString(payload, jwtId);
+        }
+        payload.append((byte) '}');
+
+        ByteArray token = buffers.token;
+        token.length = 0;
+        token.append(header);
+        appendBase64Url(token, payload.bytes, 0, payload.length);
+
+        byte[] signed = signer.sign(token.bytes, 0, token.length);
+
+        token.append((byte) '.');
+        appendBase64Url(token, signed, 0, signed.length);
+        return new String(token.bytes, 0, token.length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Converts a DER encoded ECDSA signature, SEQUENCE { INTEGER r, INTEGER s }, to the JWS format:
+     * r and s as unsigned big-endian integers of half the signature length each.
+     */
+    static byte[] derToJose(byte[] der, int length) throws SignatureException {
+        int offset = 0;
+        if (der.length < 8 || der[offset++] != 0x30) {
+            throw new SignatureException("Invalid ECDSA signature format");
+        }
+        if ((der[offset] & 0xff) == 0x81) {
+            offset++;
+        }
+        offset++;
+
+        byte[] jose = new byte[length];
+        int half = length / 2;
+        for (int i = 0; i < 2; i++) {
+            if (offset + 2 > der.length || der[offset++] != 0x02) {
+                throw new SignatureException("Invalid ECDSA signature format");
+            }
+            int integerLength = der[offset++] & 0xff;
+            int start = offset;
+            int end = offset + integerLength;
+            if (end > der.length) {
+                throw new SignatureException("Invalid ECDSA signature format");
+            }
+            while (start < end && der[start] == 0) {
+                start++;
+            }
+            if (end - start > half) {
+                throw new SignatureException("Invalid ECDSA signature format");
+            }
+            System.arraycopy(der, start, jose, (i + 1) * half - (end - start), end - start);
+            offset = end;
+        }
+        return jose;
+    }
+
+    /**
+     * Appends a JSON string, escaped the way Jackson does: quote, backslash and control characters only.
+     */
+    static void appendString(ByteArray out, String value) {
+        out.append((byte) '"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out.append((byte) c);
+                    continue;
+                }
+                out.append((byte) '\\');
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        out.append((byte) c);
+                        break;
+                    case '\b':
+                        out.append((byte) 'b');
+                        break;
+                    case '\f':
+                        out.append((byte) 'f');
+                        break;
+                    case '\n':
+                        out.append((byte) 'n');
+                        break;
+                    case '\r':
+                        out.append((byte) 'r');
+                        break;
+                    case '\t':
+                        out.append((byte) 't');
+                        break;
+                    default:
+                        out.append((byte) 'u');
+                        out.append((byte) '0');
+                        out.append((byte) '0');
+                        out.append(HEX[c >> 4]);
+                        out.append(HEX[c & 0xf]);
+                }
+            } else if (c < 0x800) {
+                out.append((byte) (0xc0 | (c >> 6)));
+                out.append((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.append((byte) (0xf0 | (codePoint >> 18)));
+                out.append((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                out.append((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                out.append((byte) (0x80 | (codePoint & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced as String.getBytes(UTF_8) does
+                out.append((byte) '?');
+            } else {
+                out.append((byte) (0xe0 | (c >> 12)));
+                out.append((byte) (0x80 | ((c >> 6) & 0x3f)));
+                out.append((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        out.append((byte) '"');
+    }
+
+    static void appendLong(ByteArray out, long value) {
+        if (value < 0) {
+            out.append((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    /**
+     * Appends the unpadded Base64URL encoding of the given bytes.
+     */
+    static void appendBase64Url(ByteArray out, byte[] bytes, int offset, int length) {
+        out.ensureCapacity(out.length + base64UrlLength(length));
+        byte[] dst = out.bytes;
+        int d = out.length;
+        int end = offset + length - length % 3;
+        for (int i = offset; i < end; i += 3) {
+            int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+            dst[d++] = BASE64URL[bits >>> 18];
+            dst[d++] = BASE64URL[(bits >>> 12) & 0x3f];
+            dst[d++] = BASE64URL[(bits >>> 6) & 0x3f];
+            dst[d++] = BASE64URL[bits & 0x3f];
+        }
+        int remaining = length % 3;
+        if (remaining == 1) {
+            int bits = (bytes[end] & 0xff) << 16;
+            dst[d++] = BASE64URL[bits >>> 18];
+            dst[d++] = BASE64URL[(bits >>> 12) & 0x3f];
+        } else if (remaining == 2) {
+            int bits = (bytes[end] & 0xff) << 16 | (bytes[end + 1] & 0xff) << 8;
+            dst[d++] = BASE64URL[bits >>> 18];
+            dst[d++] = BASE64URL[(bits >>> 12) & 0x3f];
+            dst[d++] = BASE64URL[(bits >>> 6) & 0x3f];
+        }
+        out.length = d;
+    }
+
+    private static int base64UrlLength(int length) {
+        return (length / 3) * 4 + (length % 3 == 0 ? 0 : length % 3 + 1);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The payload and token buffers of a thread, reused from one token to the next.
+     */
+    private static final class Buffers {
+        final ByteArray payload = new ByteArray(256);
+        final ByteArray token = new ByteArray(1024);
+    }
+
+    /**
+     * A growable byte array.
+     */
+    static final class ByteArray {
+        byte[] bytes;
+        int length;
+
+        ByteArray(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void append(byte b) {
+            if (length == bytes.length) {
+                ensureCapacity(length + 1);
+            }
+            bytes[length++] = b;
+        }
+
+        void append(byte[] values) {
+            ensureCapacity(length + values.length);
+            System.arraycopy(values, 0, bytes, length, values.length);
+            length += values.length;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.verbatim.client.auth;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
 
@@ -13,10 +14,14 @@ import lombok.ToString;
  * Note:
  * - It is critical to handle and store instances of this class securely.
  * - Avoid exposing sensitive information (e.g., the secret key) in front-end applications or publicly accessible areas.
+ * - The private key is never part of {@link #toString()}.
+ * <p>
+ * A key loaded in secret-holder mode (see {@link KeyLoader#secretHolder(boolean)}) keeps its private key
+ * off-heap instead of in {@code getPrivateKey()}; {@link #close()} wipes it.
  */
 @Getter
 @ToString
-public class Key {
+public class Key implements AutoCloseable {
 
     protected Key() {
     }
@@ -34,17 +39,81 @@ public class Key {
     String organizationId;
 
     /**
-     * Your private key, the private part of your RSA key.
+     * Your private key, the private part of your RSA or EC key.
      * NEVER SHARE THIS SECRET AND KEEP IT IN A SECURE PLACE. ONLY USE ON YOUR BACKEND SERVER.
      * DO NOT USE THIS KEY ON A FRONT END APP OR ON A DEVICE
+     * Null when the key has been loaded in secret-holder mode.
      */
+    @ToString.Exclude
     String privateKey;
 
     /**
-     * Your public key, the public part of your RSA key, shared on your console / Keys
+     * The private key of a key loaded in secret-holder mode, wiped by {@link #close()}
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    transient Secret privateKeySecret;
+
+    /**
+     * Your public key, the public part of your RSA or EC key, shared on your console / Keys
      */
     String publicKey;
 
+    /**
+     * Optional JWS algorithm of your key: RS256, RS384, RS512, ES256, ES384 or ES512.
+     * When not set, RSA keys sign with RS512 and EC keys with the ECDSA algorithm matching their curve.
+     */
+    String algorithm;
+
+    /**
+     * Parsed form of the public and private keys, built on first use by {@link #signingKey()}
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient volatile SigningKey signingKey;
+
+    /**
+     * Returns the parsed, immutable signing context of this key.
+     * <p>
+     * The PEM encoded public and private keys are parsed on the first call only; later calls
+     * return the same {@link SigningKey} instance. Concurrent first calls may both parse the key,
+     * which is harmless since the results are equivalent and immutable.
+     *
+     * @return the parsed signing context bound to this key
+     * @throws TokenException if the public or private key cannot be parsed
+     */
+    public SigningKey signingKey() throws TokenException {
+        SigningKey result = signingKey;
+        TokenMetrics metrics = MetricsHolder.current;
+        if (result == null) {
+            long start = System.nanoTime();
+            try {
+                result = new SigningKey(this);
+            } catch (TokenException e) {
+                metrics.failure(TokenMetrics.Failure.KEY_PARSE);
+                throw e;
+            }
+            metrics.keyParsed(keyId, System.nanoTime() - start);
+            signingKey = result;
+        } else {
+            metrics.keyParseCacheHit(keyId);
+        }
+        return result;
+    }
+
+    /**
+     * Wipes the private key of a key loaded in secret-holder mode. Does nothing otherwise.
+     * <p>
+     * An already parsed {@link #signingKey()} stays usable; a key closed before being parsed can no longer sign.
+     */
+    @Override
+    public void close() {
+        Secret secret = privateKeySecret;
+        if (secret != null) {
+            secret.close();
+        }
+    }
+
     /**
      * Ensures that the key's fields are valid and initialized properly.
      * <p>
@@ -52,6 +121,7 @@ public class Key {
      * - `keyId`, `organizationId`, and `secret` must not be null.
      * - `keyId` and `organizationId` must not be blank.
      * - `secret` must not be blank and must have a minimum length of 64 characters.
+     * - `algorithm`, when set, must be a supported {@link SigningAlgorithm}.
      * <p>
      * Throws:
      * - RuntimeException if any of the validation conditions are violated.
@@ -61,7 +131,7 @@ public class Key {
      */
     void assertContent() {
 
-        if (keyId == null || organizationId == null || publicKey == null || privateKey == null) {
+        if (keyId == null || organizationId == null || publicKey == null || (privateKey == null && privateKeySecret == null)) {
             throw new RuntimeException("Invalid key. Missing keyId, organizationId, private, public key");
         }
 
@@ -73,11 +143,11 @@ public class Key {
             throw new RuntimeException("Invalid organizationID. organizationId can't be blank");
         }
 
-        if (privateKey.isBlank()) {
+        if (privateKey != null && privateKey.isBlank()) {
             throw new RuntimeException("Invalid private key. Private key can't be blank");
         }
 
-        if (privateKey.length() < 64) {
+        if ((privateKey != null ? privateKey.length() : privateKeySecret.length()) < 64) {
             throw new RuntimeException("Invalid private key. Private key value seems wrong. You probably use a sample key, not a valid key, get from your console.");
         }
 
@@ -88,5 +158,9 @@ public class Key {
         if (publicKey.length() < 64) {
             throw new RuntimeException("Invalid public key. Public key value seems wrong. You probably use a sample key, not a valid key, get from your console.");
         }
+
+        if (algorithm != null) {
+            SigningAlgorithm.of(algorithm);
+        }
     }
 }
@@ -0,0 +1,449 @@
+package com.verbatim.client.auth;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The KeyBundle class reads the keys of many organizations from a single compact binary file, for
+ * services signing on behalf of thousands of tenants.
+ * <p>
+ * A bundle is written once from a directory of {@code key.json} files, see {@link #convert(Path, Path)}.
+ * It holds the key IDs, the organization IDs, the algorithms and the DER encoded public and private
+ * keys, indexed by key ID and by organization ID. Opening a bundle maps the file in memory with
+ * {@link FileChannel#map(FileChannel.MapMode, long, long)} and only checks its header: a key is looked
+ * up by binary search in the mapped index, and only parsed on first use. The last {@code maximumParsed}
+ * keys used are kept parsed; start-up time and heap then no longer grow with the number of tenants.
+ * <p>
+ * The file is big-endian:
+ * <pre>
+ * int magic ("VKB" 1), int key count, int organization count
+ * int[key count]          offsets of the records, in the order of their key IDs (UTF-8, unsigned bytes)
+ * int[organization count] offsets of the records signing for each organization, in the order of the organization IDs
+ * records: short length + key ID, short length + organization ID, byte length + algorithm name,
+ *          int length + X.509 public key, int length + PKCS#8 private key
+ * </pre>
+ * The private keys are not encrypted: protect the bundle like the key files it is made of.
+ * Instances are thread-safe.
+ */
+public final class KeyBundle {
+
+    static final int MAGIC = 0x564b4201;
+    static final int HEADER_SIZE = 12;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int organizationCount;
+    private final int maximumParsed;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, TokenFactory> parsed;
+
+    private KeyBundle(Builder builder, ByteBuffer buffer) throws TokenException {
+        this.path = builder.path;
+        this.buffer = buffer;
+        this.maximumParsed = builder.maximumParsed;
+        this.clock = builder.clock;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new TokenException("Not a key bundle: " + path);
+        }
+        this.count = buffer.getInt(4);
+        this.organizationCount = buffer.getInt(8);
+        if (count < 0 || organizationCount < 0
+                || HEADER_SIZE + 4L * count + 4L * organizationCount > buffer.capacity()) {
+            throw new TokenException("Corrupted key bundle: " + path);
+        }
+        this.parsed = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenFactory> eldest) {
+                return size() > maximumParsed;
+            }
+        };
+    }
+
+    /**
+     * Opens a key bundle with the default settings.
+     *
+     * @param path the path of the bundle. Must not be null.
+     * @return the opened bundle.
+     * @throws TokenException if the file cannot be read or is not a key bundle.
+     */
+    public static KeyBundle open(Path path) throws TokenException {
+        return builder(path).build();
+    }
+
+    /**
+     * Creates a builder of a reader of the given bundle, keeping up to 1 000 keys parsed and signing
+     * with the system clock.
+     *
+     * @param path the path of the bundle. Must not be null.
+     * @return a new builder.
+     */
+    public static Builder builder(Path path) {
+        return new Builder(path);
+    }
+
+    /**
+     * Writes a bundle of all the {@code *.json} key files of a directory. The files are loaded and their keys
+     * parsed as by {@link KeyRing#load(Path)}, so that invalid keys are reported now rather than on first use.
+     * When an organization has several keys, the last one in the order of the file names signs on its behalf.
+     * <p>
+     * The bundle is written to a temporary file, then moved to {@code target}: readers of a previous
+     * version of the bundle are not disturbed.
+     *
+     * @param directory the directory holding the key files. Must not be null.
+     * @param target    the path of the bundle. Must not be null.
+     * @return the number of keys written.
+     * @throws TokenException if a key file cannot be loaded or parsed, if two files hold the same key ID,
+     *                        or if the bundle cannot be written.
+     */
+    public static int convert(Path directory, Path target) throws TokenException {
+        Objects.requireNonNull(target, "target cannot be null");
+        List<TokenFactory> factories = KeyRing.loadFiles(directory);
+        List<Record> records = new ArrayList<>(factories.size());
+        // the last key of each organization signs on its behalf
+        Map<String, Record> byOrganization = new LinkedHashMap<>();
+        for (TokenFactory factory : factories) {
+            Record record = new Record(factory.getSigningKey());
+            records.add(record);
+            byOrganization.put(factory.getSigningKey().getOrganizationId(), record);
+        }
+        try {
+            write(records, new ArrayList<>(byOrganization.values()), target);
+        } catch (IOException e) {
+            throw new TokenException("Unable to write key bundle " + target + ": " + e.getMessage(), e);
+        } finally {
+            for (Record record : records) {
+                Arrays.fill(record.privateKey, (byte) 0);
+            }
+        }
+        return records.size();
+    }
+
+    private static void write(List<Record> records, List<Record> organizations, Path target) throws IOException {
+        long offset = HEADER_SIZE + 4L * records.size() + 4L * organizations.size();
+        for (Record record : records) {
+            record.offset = (int) offset;
+            offset += record.size();
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("the bundle would be larger than 2 GB");
+        }
+        List<Record> byKeyId = new ArrayList<>(records);
+        byKeyId.sort(Comparator.comparing(record -> record.keyId, Arrays::compareUnsigned));
+        organizations.sort(Comparator.comparing(record -> record.organizationId, Arrays::compareUnsigned));
+
+        Path absolute = target.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temporary);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+                output.writeInt(MAGIC);
+                output.writeInt(records.size());
+                output.writeInt(organizations.size());
+                for (Record record : byKeyId) {
+                    output.writeInt(record.offset);
+                }
+                for (Record record : organizations) {
+                    output.writeInt(record.offset);
+                }
+                for (Record record : records) {
+                    output.writeShort(record.keyId.length);
+                    output.write(record.keyId);
+                    output.writeShort(record.organizationId.length);
+                    output.write(record.organizationId);
+                    output.writeByte(record.algorithm.length);
+                    output.write(record.algorithm);
+                    output.writeInt(record.publicKey.length);
+                    output.write(record.publicKey);
+                    output.writeInt(record.privateKey.length);
+                    output.write(record.privateKey);
+                }
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns the factory signing with the given key, parsing the key on first use.
+     *
+     * @param keyId the ID of the key. Must not be null.
+     * @return the factory, or null if the bundle has no such key.
+     * @throws TokenException if the key cannot be parsed or the bundle is corrupted.
+     */
+    public TokenFactory getByKeyId(String keyId) throws TokenException {
+        Objects.requireNonNull(keyId, "keyId cannot be null");
+        TokenFactory factory = cached(keyId);
+        if (factory != null) {
+            return factory;
+        }
+        int offset = find(HEADER_SIZE, count, keyId.getBytes(StandardCharsets.UTF_8), 0);
+        return offset < 0 ? null : parse(offset);
+    }
+
+    /**
+     * Returns the factory signing on behalf of the given organization, parsing its key on first use.
+     *
+     * @param organizationId the ID of the organization. Must not be null.
+     * @return the factory, or null if the bundle has no key for the organization.
+     * @throws TokenException if the key cannot be parsed or the bundle is corrupted.
+     */
+    public TokenFactory getByOrganizationId(String organizationId) throws TokenException {
+        Objects.requireNonNull(organizationId, "organizationId cannot be null");
+        int offset = find(HEADER_SIZE + 4 * count, organizationCount, organizationId.getBytes(StandardCharsets.UTF_8), 1);
+        if (offset < 0) {
+            return null;
+        }
+        TokenFactory factory = cached(string(offset));
+        return factory != null ? factory : parse(offset);
+    }
+
+    /**
+     * @return the number of keys of the bundle.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the number of keys currently kept parsed.
+     */
+    int parsedCount() {
+        lock.lock();
+        try {
+            return parsed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TokenFactory cached(String keyId) {
+        TokenFactory factory;
+        lock.lock();
+        try {
+            factory = parsed.get(keyId);
+        } finally {
+            lock.unlock();
+        }
+        if (factory != null) {
+            MetricsHolder.current.keyParseCacheHit(keyId);
+        }
+        return factory;
+    }
+
+    /**
+     * Binary search of the given index for the record whose {@code field}-th string equals {@code value}.
+     *
+     * @return the offset of the record, or -1 if not found.
+     */
+    private int find(int index, int size, byte[] value, int field) throws TokenException {
+        try {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int offset = buffer.getInt(index + 4 * middle);
+                int compare = compare(field == 0 ? offset : offset + 2 + (buffer.getShort(offset) & 0xffff), value);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return offset;
+                }
+            }
+            return -1;
+        } catch (IndexOutOfBoundsException e) {
+            throw new TokenException("Corrupted key bundle: " + path, e);
+        }
+    }
+
+    /**
+     * Compares the length-prefixed string at the given offset with the given bytes, as unsigned bytes.
+     */
+    private int compare(int offset, byte[] value) {
+        int length = buffer.getShort(offset) & 0xffff;
+        int common = Math.min(length, value.length);
+        for (int i = 0; i < common; i++) {
+            int compare = Integer.compare(buffer.get(offset + 2 + i) & 0xff, value[i] & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(length, value.length);
+    }
+
+    private String string(int offset) {
+        byte[] bytes = new byte[buffer.getShort(offset) & 0xffff];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset + 2);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private TokenFactory parse(int offset) throws TokenException {
+        TokenMetrics metrics = MetricsHolder.current;
+        long start = System.nanoTime();
+        String keyId;
+        TokenFactory factory;
+        try {
+            ByteBuffer record = buffer.duplicate();
+            record.position(offset);
+            keyId = read(record, record.getShort() & 0xffff);
+            String organizationId = read(record, record.getShort() & 0xffff);
+            SigningAlgorithm algorithm = SigningAlgorithm.of(read(record, record.get() & 0xff));
+            byte[] publicDer = new byte[record.getInt()];
+            record.get(publicDer);
+            PublicKey publicKey = PemDecoder.readPublicKeyDer(publicDer);
+            byte[] privateDer = new byte[record.getInt()];
+            record.get(privateDer);
+            PrivateKey privateKey = PemDecoder.readPrivateKeyDer(privateDer);
+            factory = new TokenFactory(SigningKey.of(JcaSigner.builder()
+                    .keyId(keyId)
+                    .organizationId(organizationId)
+                    .algorithm(algorithm)
+                    .publicKey(publicKey)
+                    .privateKey(privateKey)
+                    .build()), clock);
+        } catch (TokenException e) {
+            metrics.failure(TokenMetrics.Failure.KEY_PARSE);
+            throw e;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            metrics.failure(TokenMetrics.Failure.KEY_PARSE);
+            throw new TokenException("Corrupted key bundle: " + path, e);
+        } catch (RuntimeException e) {
+            metrics.failure(TokenMetrics.Failure.KEY_PARSE);
+            throw new TokenException(e);
+        }
+        metrics.keyParsed(keyId, System.nanoTime() - start);
+
+        lock.lock();
+        try {
+            // a concurrent caller may have parsed the same key meanwhile: keep the first one
+            TokenFactory previous = parsed.putIfAbsent(keyId, factory);
+            return previous != null ? previous : factory;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String read(ByteBuffer record, int length) {
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A key to be written in a bundle.
+     */
+    private static final class Record {
+        final byte[] keyId;
+        final byte[] organizationId;
+        final byte[] algorithm;
+        final byte[] publicKey;
+        final byte[] privateKey;
+        int offset;
+
+        Record(SigningKey signingKey) {
+            this.keyId = signingKey.getKeyId().getBytes(StandardCharsets.UTF_8);
+            this.organizationId = signingKey.getOrganizationId().getBytes(StandardCharsets.UTF_8);
+            this.algorithm = signingKey.getSigningAlgorithm().name().getBytes(StandardCharsets.US_ASCII);
+            this.publicKey = signingKey.getPublicKey().getEncoded();
+            this.privateKey = signingKey.getPrivateKey().getEncoded();
+        }
+
+        int size() {
+            return 2 + keyId.length + 2 + organizationId.length + 1 + algorithm.length
+                    + 4 + publicKey.length + 4 + privateKey.length;
+        }
+    }
+
+    /**
+     * Builder of {@link KeyBundle} readers.
+     */
+    public static final class Builder {
+        private final Path path;
+        private int maximumParsed = 1000;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(Path path) {
+            this.path = Objects.requireNonNull(path, "path cannot be null");
+        }
+
+        /**
+         * Sets the number of keys kept parsed; the least recently used key is dropped beyond it,
+         * and parsed again on its next use.
+         *
+         * @param maximumParsed the number of keys. Must be positive.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code maximumParsed} is not positive.
+         */
+        public Builder maximumParsed(int maximumParsed) {
+            if (maximumParsed <= 0) {
+                throw new RuntimeException("maximumParsed must be positive");
+            }
+            this.maximumParsed = maximumParsed;
+            return this;
+        }
+
+        /**
+         * Sets the clock of the factories, see {@link TokenFactory#TokenFactory(SigningKey, Clock)}.
+         *
+         * @param clock the clock. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code clock} is null.
+         */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock cannot be null");
+            return this;
+        }
+
+        /**
+         * Maps the bundle in memory. The file can be replaced afterwards, e.g. by {@link #convert(Path, Path)},
+         * without affecting the opened bundle.
+         *
+         * @return the opened bundle.
+         * @throws TokenException if the file cannot be read or is not a key bundle.
+         */
+        public KeyBundle build() throws TokenException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new TokenException("Key bundle " + path + " is larger than 2 GB");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (NoSuchFileException e) {
+                throw new TokenException("Key bundle not found: " + path, e);
+            } catch (IOException e) {
+                throw new TokenException("Unable to read key bundle " + path + ": " + e.getMessage(), e);
+            }
+            return new KeyBundle(this, buffer);
+        }
+    }
+}
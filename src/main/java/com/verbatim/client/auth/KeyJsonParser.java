@@ -0,0 +1,341 @@
+package com.verbatim.client.auth;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser of the UTF-8 encoded {@code key.json} format, used by {@link KeyLoader}.
+ * <p>
+ * The parser works directly on the bytes of the file and only knows the fields of {@link Key}:
+ * {@code keyId}, {@code organizationId}, {@code privateKey}, {@code publicKey} and {@code algorithm}.
+ * Values are strings or {@code null}. Unknown and duplicate fields are rejected. ASCII strings without
+ * escape sequences, i.e. all the values of a regular key file, are decoded with a single copy.
+ * <p>
+ * In secret-holder mode, the private key is unescaped straight into a direct buffer, see {@link Secret}:
+ * no String nor heap copy of it is created.
+ */
+final class KeyJsonParser {
+
+    private static final int KEY_ID = 1;
+    private static final int ORGANIZATION_ID = 1 << 1;
+    private static final int PRIVATE_KEY = 1 << 2;
+    private static final int PUBLIC_KEY = 1 << 3;
+    private static final int ALGORITHM = 1 << 4;
+
+    private final byte[] bytes;
+    private final int base;
+    private final int limit;
+    private final boolean secretHolder;
+    private int offset;
+    private StringBuilder builder;
+
+    private KeyJsonParser(byte[] bytes, int offset, int limit, boolean secretHolder) {
+        this.bytes = bytes;
+        this.secretHolder = secretHolder;
+        this.base = offset;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Parses a key.
+     *
+     * @param bytes  the UTF-8 encoded JSON object.
+     * @param offset the offset of the JSON object in {@code bytes}.
+     * @param length the length of the JSON object.
+     * @param secretHolder whether the private key is kept off-heap rather than as a String.
+     * @return the parsed key, not yet validated.
+     * @throws RuntimeException if the JSON is malformed or has an unknown or duplicate field.
+     */
+    static Key parse(byte[] bytes, int offset, int length, boolean secretHolder) {
+        Key key = new Key();
+        try {
+            new KeyJsonParser(bytes, offset, offset + length, secretHolder).parse(key);
+        } catch (RuntimeException e) {
+            key.close();
+            throw e;
+        }
+        return key;
+    }
+
+    private void parse(Key key) {
+        skipByteOrderMark();
+        int seen = 0;
+
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            offset++;
+        } else {
+            while (true) {
+                int start = offset;
+                expect('"');
+                String name = readString();
+                int field = field(name, start);
+                if ((seen & field) != 0) {
+                    throw error("Duplicate field \"" + name + "\"", start);
+                }
+                seen |= field;
+
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                readField(key, field, name);
+
+                skipWhitespace();
+                int separator = next();
+                if (separator == '}') {
+                    break;
+                }
+                if (separator != ',') {
+                    throw error("Expected ',' or '}'", offset - 1);
+                }
+                skipWhitespace();
+            }
+        }
+
+        skipWhitespace();
+        if (offset < limit) {
+            throw error("Unexpected content after the key object", offset);
+        }
+    }
+
+    private int field(String name, int offset) {
+        switch (name) {
+            case "keyId":
+                return KEY_ID;
+            case "organizationId":
+                return ORGANIZATION_ID;
+            case "privateKey":
+                return PRIVATE_KEY;
+            case "publicKey":
+                return PUBLIC_KEY;
+            case "algorithm":
+                return ALGORITHM;
+            default:
+                throw error("Unknown field \"" + name + "\"", offset);
+        }
+    }
+
+    private void readField(Key key, int field, String name) {
+        if (field == PRIVATE_KEY && secretHolder && peek() == '"') {
+            offset++;
+            key.privateKeySecret = readSecret();
+            return;
+        }
+        String value = readValue(name);
+        switch (field) {
+            case KEY_ID:
+                key.keyId = value;
+                break;
+            case ORGANIZATION_ID:
+                key.organizationId = value;
+                break;
+            case PRIVATE_KEY:
+                key.privateKey = value;
+                break;
+            case PUBLIC_KEY:
+                key.publicKey = value;
+                break;
+            default:
+                key.algorithm = value;
+                break;
+        }
+    }
+
+    private String readValue(String name) {
+        int start = offset;
+        int c = peek();
+        if (c == '"') {
+            offset++;
+            return readString();
+        }
+        if (c == 'n' && limit - offset >= 4
+                && bytes[offset + 1] == 'u' && bytes[offset + 2] == 'l' && bytes[offset + 3] == 'l') {
+            offset += 4;
+            return null;
+        }
+        throw error("Field \"" + name + "\" must be a string", start);
+    }
+
+    /**
+     * Reads a string, the opening quote being already consumed.
+     */
+    private String readString() {
+        int start = offset;
+        while (offset < limit) {
+            byte b = bytes[offset];
+            if (b == '"') {
+                String value = new String(bytes, start, offset - start, StandardCharsets.ISO_8859_1);
+                offset++;
+                return value;
+            }
+            if (b == '\\' || b < 0x20) {
+                break;
+            }
+            offset++;
+        }
+        if (builder == null) {
+            builder = new StringBuilder();
+        }
+        builder.setLength(0);
+        return readEscapedString(start);
+    }
+
+    /**
+     * Reads an ASCII string into a direct buffer, the opening quote being already consumed.
+     */
+    private Secret readSecret() {
+        int start = offset;
+        int end = start;
+        while (end < limit && bytes[end] != '"') {
+            end += bytes[end] == '\\' ? 2 : 1;
+        }
+        if (end >= limit) {
+            throw error("Unterminated string", start - 1);
+        }
+
+        // unescaping only shrinks the value, so its raw length is enough
+        ByteBuffer secret = ByteBuffer.allocateDirect(end - start);
+        try {
+            while (offset < end) {
+                byte b = bytes[offset];
+                if (b == '\\') {
+                    offset++;
+                    char c = readEscape();
+                    if (c >= 0x80) {
+                        throw error("Private key must be ASCII", offset);
+                    }
+                    secret.put((byte) c);
+                } else if (b < 0x20) {
+                    throw error(b < 0 ? "Private key must be ASCII" : "Unescaped control character in string", offset);
+                } else {
+                    secret.put(b);
+                    offset++;
+                }
+            }
+        } catch (RuntimeException e) {
+            wipe(secret);
+            throw e;
+        }
+        offset++;
+        secret.flip();
+        return new Secret(secret);
+    }
+
+    private static void wipe(ByteBuffer buffer) {
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * Reads the rest of a string holding escape sequences or non-ASCII characters.
+     */
+    private String readEscapedString(int start) {
+        int run = start;
+        while (offset < limit) {
+            byte b = bytes[offset];
+            if (b == '"') {
+                appendRun(run);
+                offset++;
+                return builder.toString();
+            }
+            if (b == '\\') {
+                appendRun(run);
+                offset++;
+                builder.append(readEscape());
+                run = offset;
+            } else if (b >= 0 && b < 0x20) {
+                throw error("Unescaped control character in string", offset);
+            } else {
+                offset++;
+            }
+        }
+        throw error("Unterminated string", start - 1);
+    }
+
+    private void appendRun(int start) {
+        if (offset > start) {
+            builder.append(new String(bytes, start, offset - start, StandardCharsets.UTF_8));
+        }
+    }
+
+    private char readEscape() {
+        int start = offset - 1;
+        switch (next()) {
+            case '"':
+                return '"';
+            case '\\':
+                return '\\';
+            case '/':
+                return '/';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (limit - offset < 4) {
+                    throw error("Invalid unicode escape", start);
+                }
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(bytes[offset++], 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape", start);
+                    }
+                    c = (c << 4) | digit;
+                }
+                return (char) c;
+            default:
+                throw error("Invalid escape sequence", start);
+        }
+    }
+
+    private void skipByteOrderMark() {
+        if (limit - offset >= 3 && bytes[offset] == (byte) 0xEF && bytes[offset + 1] == (byte) 0xBB && bytes[offset + 2] == (byte) 0xBF) {
+            offset += 3;
+        }
+    }
+
+    private void skipWhitespace() {
+        while (offset < limit) {
+            byte b = bytes[offset];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            offset++;
+        }
+    }
+
+    private int peek() {
+        if (offset >= limit) {
+            throw error("Unexpected end of input", offset);
+        }
+        return bytes[offset];
+    }
+
+    private int next() {
+        int c = peek();
+        offset++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'", offset);
+        }
+        offset++;
+    }
+
+    private RuntimeException error(String message, int offset) {
+        return new RuntimeException("Invalid key file: " + message + " at offset " + (offset - base));
+    }
+}
@@ -1,9 +1,14 @@
 package com.verbatim.client.auth;
 
-import com.google.gson.Gson;
-
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -11,61 +16,171 @@ import java.util.Objects;
  * in a secure and reliable manner. It provides multiple methods to load
  * a `Key` instance from various input sources such as a file, InputStream, or Reader.
  * <p>
+ * Key files are UTF-8 encoded JSON objects with the fields `keyId`, `organizationId`, `privateKey`,
+ * `publicKey` and the optional `algorithm`. Unknown and duplicate fields are rejected. The buffers
+ * used to read a key file are zeroed once parsed.
+ * <p>
  * The class ensures integrity and correctness by validating the key's
  * state during loading and access operations.
  */
 public class KeyLoader {
 
+    /**
+     * Maximum size of a key file. A 4096 bits RSA key file is about 5 KB.
+     */
+    static final int MAX_SIZE = 1 << 20;
+
     private Key key = null;
 
+    private boolean secretHolder = false;
+
+    private int warmUpSignatures = -1;
+
+    private WarmUp.Report warmUpReport = null;
+
+    /**
+     * Enables the secret-holder mode, to be set before loading the key.
+     * <p>
+     * In this mode, the private key is kept in an off-heap buffer that {@link Key#close()} wipes, rather
+     * than in a String: {@code Key.getPrivateKey()} returns null and the private key is only reachable
+     * through {@link Key#signingKey()}, which parses it once. Heap footprint and GC work then no longer
+     * grow with the size of the loaded private keys. Prefer loading from a file or a stream in this
+     * mode: the content of a Reader is copied in a String by the caller anyway.
+     *
+     * @param secretHolder whether the secret-holder mode is enabled.
+     * @return the current instance of KeyLoader
+     * @throws RuntimeException if a key is already loaded
+     */
+    public KeyLoader secretHolder(boolean secretHolder) {
+        assertState();
+        this.secretHolder = secretHolder;
+        return this;
+    }
+
+    /**
+     * Enables the warm-up of the loaded key, to be set before loading the key.
+     * <p>
+     * {@link #get()} then parses the public and private keys, checks that they match by signing and
+     * verifying a token, and warms up the signing path with the given number of signatures, see
+     * {@link WarmUp}. A key that cannot sign fails at load time rather than on the first token.
+     *
+     * @param signatures the number of warm-up signatures after the check, e.g. {@link WarmUp#DEFAULT_SIGNATURES}.
+     * @return the current instance of KeyLoader
+     * @throws RuntimeException if {@code signatures} is negative or a key is already loaded
+     */
+    public KeyLoader warmUp(int signatures) {
+        assertState();
+        if (signatures < 0) {
+            throw new RuntimeException("signatures cannot be negative");
+        }
+        this.warmUpSignatures = signatures;
+        return this;
+    }
+
+    /**
+     * @return the timings of the warm-up of the loaded key, or null if the warm-up is not enabled
+     * or has not run yet, see {@link #warmUp(int)}.
+     */
+    public WarmUp.Report getWarmUpReport() {
+        return warmUpReport;
+    }
+
     /**
      * Loads a key from the provided file system path.
      * <p>
-     * This method ensures that the specified path is not null and delegat_es
-     * the loading process to the {@link #from(File)} method after converting
-     * the Path to a File object.
+     * The file is read through a {@link FileChannel}, which is closed before this method returns.
      *
      * @param path the file system path pointing to the key file, must not be null
      * @return the current instance of KeyLoader
      * @throws FileNotFoundException if the file specified by the path does not exist
+     * @throws UncheckedIOException  if the file cannot be read
      * @throws NullPointerException  if the path is null
+     * @throws RuntimeException      if the file is not a valid key file or a key is already loaded
      */
     public KeyLoader from(Path path) throws FileNotFoundException {
         Objects.requireNonNull(path, "path cannot be null");
-        return from(path.toFile());
+        assertState();
+        long start = System.nanoTime();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_SIZE) {
+                throw new RuntimeException("Invalid key file: " + path + " is larger than " + MAX_SIZE + " bytes");
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until the end of the file
+            }
+        } catch (NoSuchFileException e) {
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_LOAD);
+            FileNotFoundException notFound = new FileNotFoundException(path + " (No such file)");
+            notFound.initCause(e);
+            throw notFound;
+        } catch (IOException e) {
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_LOAD);
+            throw new UncheckedIOException("Unable to read key file " + path, e);
+        } catch (RuntimeException e) {
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_LOAD);
+            throw e;
+        }
+        return parse(buffer.array(), buffer.position(), start);
     }
 
     /**
      * Loads a key from the provided File.
      * <p>
-     * This method reads the file containing the key data in JSON format,
-     * creates a FileReader for the file, and delegates the loading process
-     * to the {@link #from(Reader)} method.
+     * This method delegates the loading process to the {@link #from(Path)} method.
      *
      * @param file the File object pointing to the key file, must not be null
      * @return the current instance of KeyLoader
      * @throws FileNotFoundException if the specified file does not exist
+     * @throws UncheckedIOException  if the file cannot be read
      * @throws NullPointerException  if the file is null
+     * @throws RuntimeException      if the file is not a valid key file or a key is already loaded
      */
     public KeyLoader from(File file) throws FileNotFoundException {
         Objects.requireNonNull(file, "file cannot be null");
-        return from(new FileReader(file));
+        return from(file.toPath());
     }
 
     /**
      * Loads a key from the given InputStream.
      * <p>
-     * This method requires a valid InputStream that contains the key data in JSON format.
-     * It uses an InputStreamReader to process the InputStream and delegates the loading process
-     * to the {@link #from(Reader)} method.
+     * This method reads the UTF-8 encoded key data until the end of the stream. The stream is owned
+     * by the caller and is not closed.
      *
      * @param inputStream the InputStream containing the key data, must not be null
      * @return the current instance of KeyLoader
      * @throws NullPointerException if the inputStream is null
+     * @throws UncheckedIOException if the stream cannot be read
+     * @throws RuntimeException     if the data is not a valid key file or a key is already loaded
      */
     public KeyLoader from(InputStream inputStream) {
         Objects.requireNonNull(inputStream, "inputStream cannot be null");
-        return from(new InputStreamReader(inputStream));
+        assertState();
+        long start = System.nanoTime();
+        byte[] bytes = new byte[8192];
+        int length = 0;
+        try {
+            int read;
+            while ((read = inputStream.read(bytes, length, bytes.length - length)) >= 0) {
+                length += read;
+                if (length == bytes.length) {
+                    assertSize(length + 1);
+                    byte[] larger = Arrays.copyOf(bytes, bytes.length * 2);
+                    Arrays.fill(bytes, (byte) 0);
+                    bytes = larger;
+                }
+            }
+        } catch (IOException e) {
+            Arrays.fill(bytes, (byte) 0);
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_LOAD);
+            throw new UncheckedIOException("Unable to read key data", e);
+        } catch (RuntimeException e) {
+            Arrays.fill(bytes, (byte) 0);
+            throw e;
+        }
+        return parse(bytes, length, start);
     }
 
     /**
@@ -74,28 +189,82 @@ public class KeyLoader {
      * This method parses the key data in JSON format from the given Reader
      * and initializes the `Key` instance. It ensures that the Reader is not null
      * and validates the internal state of the KeyLoader to prevent multiple keys
-     * from being loaded concurrently.
+     * from being loaded concurrently. The reader is owned by the caller and is not closed.
      *
      * @param reader the Reader containing the key data in JSON format, must not be null
      * @return the current instance of KeyLoader
      * @throws NullPointerException if the reader is null
-     * @throws RuntimeException     if a key is already loaded
+     * @throws UncheckedIOException if the reader cannot be read
+     * @throws RuntimeException     if the data is not a valid key file or a key is already loaded
      */
     public KeyLoader from(Reader reader) {
         Objects.requireNonNull(reader, "reader cannot be null");
         assertState();
-        key = new Gson().fromJson(reader, Key.class);
+        long start = System.nanoTime();
+        CharBuffer chars = CharBuffer.allocate(8192);
+        try {
+            while (reader.read(chars) >= 0) {
+                if (!chars.hasRemaining()) {
+                    assertSize(chars.capacity() + 1);
+                    CharBuffer larger = CharBuffer.allocate(chars.capacity() * 2);
+                    chars.flip();
+                    larger.put(chars);
+                    Arrays.fill(chars.array(), '\0');
+                    chars = larger;
+                }
+            }
+        } catch (IOException e) {
+            Arrays.fill(chars.array(), '\0');
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_LOAD);
+            throw new UncheckedIOException("Unable to read key data", e);
+        } catch (RuntimeException e) {
+            Arrays.fill(chars.array(), '\0');
+            throw e;
+        }
+        chars.flip();
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(chars);
+        Arrays.fill(chars.array(), '\0');
+        return parse(bytes.array(), bytes.limit(), start);
+    }
+
+    private KeyLoader parse(byte[] bytes, int length, long start) {
+        try {
+            key = KeyJsonParser.parse(bytes, 0, length, secretHolder);
+        } catch (RuntimeException e) {
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_LOAD);
+            throw e;
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+        MetricsHolder.current.keyLoaded(System.nanoTime() - start);
         return this;
     }
 
+    private static void assertSize(int size) {
+        if (size > MAX_SIZE) {
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_LOAD);
+            throw new RuntimeException("Invalid key file: larger than " + MAX_SIZE + " bytes");
+        }
+    }
+
     /**
      * Retrieves the currently loaded Key instance.
      * <p>
      * This method ensures that the Key object has been properly initialized
-     * and validated before it is returned
+     * and validated before it is returned. When enabled, the warm-up runs on the first call.
+     *
+     * @throws RuntimeException if the key is invalid, or if the warm-up fails: the key is then closed
      */
     public Key get() {
         assertKey();
+        if (warmUpSignatures >= 0 && warmUpReport == null) {
+            try {
+                warmUpReport = WarmUp.run(key, warmUpSignatures);
+            } catch (TokenException e) {
+                key.close();
+                throw new RuntimeException("Invalid key: " + e.getMessage(), e);
+            }
+        }
         return key;
     }
 
@@ -106,7 +275,15 @@ public class KeyLoader {
     }
 
     private void assertKey() {
-        Objects.requireNonNull(key, "key cannot be null");
-        key.assertContent();
+        try {
+            Objects.requireNonNull(key, "key cannot be null");
+            key.assertContent();
+        } catch (RuntimeException e) {
+            if (key != null) {
+                key.close();
+            }
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_LOAD);
+            throw e;
+        }
     }
 }
@@ -0,0 +1,228 @@
+package com.verbatim.client.auth;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The KeyRing class holds the keys of many organizations, for services signing tokens on behalf of
+ * several Verbatim organizations from a single JVM.
+ * <p>
+ * Each key is parsed once, when it is added, and indexed both by key ID and by organization ID for
+ * constant time lookups. When an organization has several keys, the last one added is used to sign
+ * on its behalf. A KeyRing is thread-safe: keys can be added or removed while other threads sign. Lookups
+ * do not lock; additions and removals are serialized so that both indexes stay consistent.
+ */
+public final class KeyRing {
+
+    private final ConcurrentHashMap<String, TokenFactory> byKeyId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TokenFactory> byOrganizationId = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Loads all the {@code *.json} key files of a directory, in parallel.
+     * <p>
+     * Files are loaded in secret-holder mode (see {@link KeyLoader#secretHolder(boolean)}) and their
+     * PEM encoded private keys are wiped once parsed.
+     *
+     * @param directory the directory holding the key files. Must not be null.
+     * @return a key ring holding the loaded keys.
+     * @throws TokenException if the directory cannot be listed, if a key file cannot be loaded or
+     *                        parsed, or if two files hold the same key ID.
+     */
+    public static KeyRing load(Path directory) throws TokenException {
+        KeyRing keyRing = new KeyRing();
+        for (TokenFactory factory : loadFiles(directory)) {
+            keyRing.add(factory);
+        }
+        return keyRing;
+    }
+
+    /**
+     * Loads and parses all the {@code *.json} key files of a directory in parallel, see {@link #load(Path)}.
+     *
+     * @return the factories of the keys, in the order of the file names.
+     */
+    static List<TokenFactory> loadFiles(Path directory) throws TokenException {
+        Objects.requireNonNull(directory, "directory cannot be null");
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(".json") && Files.isRegularFile(file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new TokenException(e);
+        }
+
+        List<TokenFactory> factories;
+        try {
+            factories = files.parallelStream().map(KeyRing::loadFile).collect(Collectors.toList());
+        } catch (LoadException e) {
+            throw (TokenException) e.getCause();
+        }
+
+        Set<String> keyIds = new HashSet<>();
+        for (TokenFactory factory : factories) {
+            if (!keyIds.add(factory.getSigningKey().getKeyId())) {
+                throw new TokenException("Duplicate key ID " + factory.getSigningKey().getKeyId() + " in " + directory);
+            }
+        }
+        return factories;
+    }
+
+    private static TokenFactory loadFile(Path file) {
+        try {
+            // only the parsed key is kept, the PEM encoded private key is wiped right away
+            try (Key key = new KeyLoader().secretHolder(true).from(file).get()) {
+                return new TokenFactory(key);
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new LoadException(new TokenException("Unable to load key file " + file + ": " + e.getMessage(), e));
+        } catch (TokenException e) {
+            throw new LoadException(new TokenException("Unable to parse key file " + file + ": " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Adds a key, replacing any key with the same key ID. The key becomes the one used to sign for its organization.
+     *
+     * @param key the key. Must not be null.
+     * @return the current instance of {@code KeyRing} to allow method chaining.
+     * @throws TokenException if the public or private key cannot be parsed.
+     */
+    public KeyRing add(Key key) throws TokenException {
+        Objects.requireNonNull(key, "key cannot be null");
+        return add(new TokenFactory(key));
+    }
+
+    private KeyRing add(TokenFactory factory) {
+        SigningKey signingKey = factory.getSigningKey();
+        lock.lock();
+        try {
+            TokenFactory replaced = byKeyId.put(signingKey.getKeyId(), factory);
+            byOrganizationId.put(signingKey.getOrganizationId(), factory);
+            if (replaced != null && !replaced.getSigningKey().getOrganizationId().equals(signingKey.getOrganizationId())) {
+                // the key moved to another organization
+                unmapOrganization(replaced);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Removes a key. If it was the key used for its organization, another key of the same organization,
+     * if any, takes over.
+     *
+     * @param keyId the ID of the key.
+     * @return true if the key was removed.
+     */
+    public boolean remove(String keyId) {
+        Objects.requireNonNull(keyId, "keyId cannot be null");
+        lock.lock();
+        try {
+            TokenFactory removed = byKeyId.remove(keyId);
+            if (removed == null) {
+                return false;
+            }
+            unmapOrganization(removed);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands the organization of a key no longer in the key ring over to another key of the same
+     * organization, if any, when it was the key used for it. Called with the lock held.
+     */
+    private void unmapOrganization(TokenFactory removed) {
+        String organizationId = removed.getSigningKey().getOrganizationId();
+        if (byOrganizationId.remove(organizationId, removed)) {
+            byKeyId.values().stream()
+                    .filter(factory -> factory.getSigningKey().getOrganizationId().equals(organizationId))
+                    .findFirst()
+                    .ifPresent(factory -> byOrganizationId.put(organizationId, factory));
+        }
+    }
+
+    /**
+     * @param keyId the ID of the key.
+     * @return the factory signing with the given key, or null if the key ring has no such key.
+     */
+    public TokenFactory getByKeyId(String keyId) {
+        Objects.requireNonNull(keyId, "keyId cannot be null");
+        return byKeyId.get(keyId);
+    }
+
+    /**
+     * @param organizationId the ID of the organization.
+     * @return the factory signing for the given organization, or null if the key ring has no key for it.
+     */
+    public TokenFactory getByOrganizationId(String organizationId) {
+        Objects.requireNonNull(organizationId, "organizationId cannot be null");
+        return byOrganizationId.get(organizationId);
+    }
+
+    /**
+     * Signs a token on behalf of an organization.
+     *
+     * @param organizationId the ID of the organization. Must not be null.
+     * @param userId         the unique identifier of the user, or null to omit the claim.
+     * @param userEmail      the email of the user, or null to omit the claim.
+     * @param expiresAt      the expiration time of the token.
+     * @return a signed JWT as a String.
+     * @throws TokenException if the key ring has no key for the organization, or if the token cannot be signed.
+     */
+    public String sign(String organizationId, String userId, String userEmail, Instant expiresAt) throws TokenException {
+        TokenFactory factory = getByOrganizationId(organizationId);
+        if (factory == null) {
+            throw new TokenException("No key for organization " + organizationId);
+        }
+        return factory.sign(userId, userEmail, expiresAt);
+    }
+
+    /**
+     * Signs a token with a given key.
+     *
+     * @param keyId     the ID of the key. Must not be null.
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @param expiresAt the expiration time of the token.
+     * @return a signed JWT as a String.
+     * @throws TokenException if the key ring has no such key, or if the token cannot be signed.
+     */
+    public String signWithKey(String keyId, String userId, String userEmail, Instant expiresAt) throws TokenException {
+        TokenFactory factory = getByKeyId(keyId);
+        if (factory == null) {
+            throw new TokenException("No key with ID " + keyId);
+        }
+        return factory.sign(userId, userEmail, expiresAt);
+    }
+
+    /**
+     * @return the number of keys.
+     */
+    public int size() {
+        return byKeyId.size();
+    }
+
+    /**
+     * Carries a checked exception out of a parallel stream.
+     */
+    private static final class LoadException extends RuntimeException {
+        LoadException(TokenException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.verbatim.client.auth;
+
+import lombok.extern.java.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * The KeyWatcher class keeps a {@link Key} in sync with its {@code key.json} file, so that
+ * credentials can be rotated without restarting the JVM.
+ * <p>
+ * The directory of the file is watched with a {@link WatchService}, and the file attributes are
+ * also checked every {@code pollInterval}, which covers file systems where no watch event is
+ * delivered (network mounts, symbolic link swaps of mounted secrets). When WatchService is not
+ * available, polling alone is used.
+ * <p>
+ * On change, the file is loaded with a new {@link KeyLoader}, checked with {@link Key#assertContent()}
+ * and its keys are parsed. Only then is the new key published, through an atomic reference: readers
+ * never wait and never see a half-loaded key. A file that fails to load is logged and ignored, the
+ * previous key stays in use.
+ */
+@Log
+public final class KeyWatcher implements Closeable {
+
+    private final Path path;
+    private final Duration pollInterval;
+    private final Consumer<Key> listener;
+    private final AtomicReference<Loaded> current = new AtomicReference<>();
+    private final Thread thread;
+    private volatile boolean closed = false;
+    private WatchService watchService;
+    private Object fingerprint;
+
+    private KeyWatcher(Builder builder) throws TokenException {
+        this.path = builder.path.toAbsolutePath();
+        this.pollInterval = builder.pollInterval;
+        this.listener = builder.listener;
+        this.fingerprint = fingerprint();
+        current.set(load());
+
+        if (builder.watchService) {
+            try {
+                watchService = path.getFileSystem().newWatchService();
+                path.getParent().register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException | UnsupportedOperationException e) {
+                log.log(Level.INFO, "WatchService not available for " + path + ", polling every " + pollInterval, e);
+                closeWatchService();
+            }
+        }
+
+        thread = new Thread(this::run, "verbatim-key-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads the given key file and starts watching it with the default settings.
+     *
+     * @param path the path of the key file. Must not be null.
+     * @return a running watcher.
+     * @throws TokenException if the key file cannot be loaded.
+     */
+    public static KeyWatcher watch(Path path) throws TokenException {
+        return builder(path).build();
+    }
+
+    /**
+     * Creates a builder of a watcher of the given key file, polling every 10 seconds in addition to the WatchService.
+     *
+     * @param path the path of the key file. Must not be null.
+     * @return a new builder.
+     */
+    public static Builder builder(Path path) {
+        return new Builder(path);
+    }
+
+    /**
+     * @return the current key.
+     */
+    public Key get() {
+        return current.get().key;
+    }
+
+    /**
+     * @return a factory signing with the current key. Fetch it again for each token so that key rotations are picked up.
+     */
+    public TokenFactory factory() {
+        return current.get().factory;
+    }
+
+    /**
+     * Stops watching the key file. The last loaded key remains available.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeWatchService();
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                if (watchService != null) {
+                    // any event in the directory triggers a check, e.g. the swap of a symbolic link to the file
+                    WatchKey key = watchService.poll(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                        drainEvents();
+                    }
+                } else {
+                    Thread.sleep(pollInterval.toMillis());
+                }
+                checkForChange();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                if (!closed) {
+                    log.log(Level.WARNING, "Key watcher of " + path + " stopped", e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void drainEvents() {
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            key.pollEvents();
+            key.reset();
+        }
+    }
+
+    private void checkForChange() {
+        Object latest = fingerprint();
+        if (latest == null || latest.equals(fingerprint)) {
+            return;
+        }
+        try {
+            Loaded loaded = load();
+            current.set(loaded);
+            // only once loaded, a failed load is retried on the next poll, e.g. after a partial write
+            fingerprint = latest;
+            log.info("Key " + loaded.key.getKeyId() + " reloaded from " + path);
+            MetricsHolder.current.keyReloaded(loaded.key.getKeyId());
+            if (listener != null) {
+                listener.accept(loaded.key);
+            }
+        } catch (Exception e) {
+            MetricsHolder.current.failure(TokenMetrics.Failure.KEY_RELOAD);
+            log.log(Level.WARNING, "Unable to reload the key from " + path + ", the previous key is kept", e);
+        }
+    }
+
+    private Loaded load() throws TokenException {
+        try {
+            Key key = new KeyLoader().from(path).get();
+            return new Loaded(key, new TokenFactory(key));
+        } catch (IOException | RuntimeException e) {
+            throw new TokenException(e);
+        }
+    }
+
+    /**
+     * Returns the modification time, size and identity of the key file, or null if it cannot be read.
+     */
+    private Object fingerprint() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.lastModifiedTime() + "/" + attributes.size() + "/" + attributes.fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.log(Level.FINE, "Unable to close the WatchService", e);
+            }
+        }
+    }
+
+    /**
+     * A loaded key and the factory signing with its parsed keys, published together.
+     */
+    private static final class Loaded {
+        final Key key;
+        final TokenFactory factory;
+
+        Loaded(Key key, TokenFactory factory) {
+            this.key = key;
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * Builder of {@link KeyWatcher} instances.
+     */
+    public static final class Builder {
+        private final Path path;
+        private Duration pollInterval = Duration.ofSeconds(10);
+        private boolean watchService = true;
+        private Consumer<Key> listener;
+
+        private Builder(Path path) {
+            this.path = Objects.requireNonNull(path, "path cannot be null");
+        }
+
+        /**
+         * Sets how often the attributes of the key file are checked, in addition to the WatchService events.
+         *
+         * @param pollInterval the poll interval. Must be positive.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code pollInterval} is null.
+         * @throws RuntimeException     if {@code pollInterval} is not positive.
+         */
+        public Builder pollInterval(Duration pollInterval) {
+            Objects.requireNonNull(pollInterval, "pollInterval cannot be null");
+            if (pollInterval.isNegative() || pollInterval.isZero()) {
+                throw new RuntimeException("pollInterval must be positive");
+            }
+            this.pollInterval = pollInterval;
+            return this;
+        }
+
+        /**
+         * Sets whether a WatchService is used; when disabled, the key file is only polled.
+         *
+         * @param watchService false to only poll the key file.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder watchService(boolean watchService) {
+            this.watchService = watchService;
+            return this;
+        }
+
+        /**
+         * Sets a listener called with each newly loaded key, after it has been published.
+         *
+         * @param listener the listener. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code listener} is null.
+         */
+        public Builder listener(Consumer<Key> listener) {
+            this.listener = Objects.requireNonNull(listener, "listener cannot be null");
+            return this;
+        }
+
+        /**
+         * Loads the key file and starts watching it.
+         *
+         * @return a running watcher.
+         * @throws TokenException if the key file cannot be loaded.
+         */
+        public KeyWatcher build() throws TokenException {
+            return new KeyWatcher(this);
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.verbatim.client.auth;
 import lombok.extern.java.Log;
 
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 
@@ -17,6 +20,10 @@ import java.time.temporal.ChronoUnit;
  * 3. Generates an authentication token with a 24-hour expiration time.
  * 4. Outputs the token and its expiration time to the console.
  *
+ * Two other modes, requiring Java 16+, avoid paying the JVM start-up and the key parsing for every token:
+ * - {@code --daemon socket key.json} loads the key once, warms it up (see {@link WarmUp}) and serves tokens on a Unix domain socket, see {@code TokenDaemon}.
+ * - {@code --client socket [--uid userId] [--email userEmail] [--ttl seconds]} prints a token fetched from a running daemon.
+ *
  * Behavior upon exceptions:
  * - Logs a warning if the required argument is missing and exits the program.
  * - Catches any exceptions during execution, logs an error message and stack trace, and exits the program.
@@ -26,19 +33,32 @@ import java.time.temporal.ChronoUnit;
  */
 @Log
 public class Main {
+
+    private static final String USAGE = "Usage : java -jar verbatim-java-client-auth.jar path/key.json"
+            + " | --daemon path/token.sock path/key.json"
+            + " | --client path/token.sock [--uid userId] [--email userEmail] [--ttl seconds]";
+
     public static void main(String[] args) {
 
-        if (args == null || args.length != 1) {
-            log.warning("missing parameters. Usage : java -jar verbatim-java-client-auth.jar path/key.json");
-            System.exit(1);
+        if (args == null || args.length == 0) {
+            usage();
         }
 
         try {
-            Key key = new KeyLoader().from(new File(args[0])).get();
-            Instant expiredAt = Instant.now().plus(1, ChronoUnit.DAYS);
-            String token = new TokenBuilder().key(key).expiresAt(expiredAt).build();
-            System.out.println("Your token is ready. Expires at: " + expiredAt);
-            System.out.println(token);
+            switch (args[0]) {
+                case "--daemon":
+                    daemonMode("daemon", args);
+                    break;
+                case "--client":
+                    daemonMode("client", args);
+                    break;
+                default:
+                    if (args.length != 1) {
+                        usage();
+                    }
+                    token(args[0]);
+                    break;
+            }
         } catch (Exception e) {
             System.err.println("Exception when calling Main");
             System.err.println("Reason: " + e.getMessage());
@@ -46,4 +66,41 @@ public class Main {
             System.exit(1);
         }
     }
+
+    private static void token(String keyFile) throws Exception {
+        Key key = new KeyLoader().from(new File(keyFile)).get();
+        // JWT times are whole seconds, so is the expiration printed
+        Clock clock = CoarseClock.systemUTC();
+        Instant expiredAt = clock.instant().plus(1, ChronoUnit.DAYS);
+        String token = new TokenBuilder().key(key).clock(clock).expiresAt(expiredAt).build();
+        System.out.println("Your token is ready. Expires at: " + expiredAt);
+        System.out.println(token);
+    }
+
+    /**
+     * Runs a mode of {@link DaemonMain}, which is compiled for Java 16 apart from the rest of the library.
+     */
+    private static void daemonMode(String mode, String[] args) throws Exception {
+        assertUnixDomainSockets();
+        Method method = Class.forName("com.verbatim.client.auth.DaemonMain").getDeclaredMethod(mode, String[].class);
+        try {
+            method.invoke(null, (Object) args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static void assertUnixDomainSockets() {
+        if (Runtime.version().feature() < 16) {
+            throw new RuntimeException("Unix domain sockets require Java 16+, running on Java " + Runtime.version());
+        }
+    }
+
+    static void usage() {
+        log.warning("missing parameters. " + USAGE);
+        System.exit(1);
+    }
 }
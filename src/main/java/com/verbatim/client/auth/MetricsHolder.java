@@ -0,0 +1,12 @@
+package com.verbatim.client.auth;
+
+/**
+ * Holds the installed {@link TokenMetrics}, see {@link TokenMetrics#install(TokenMetrics)}.
+ */
+final class MetricsHolder {
+
+    static volatile TokenMetrics current = TokenMetrics.NOOP;
+
+    private MetricsHolder() {
+    }
+}
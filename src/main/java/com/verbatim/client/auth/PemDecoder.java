@@ -0,0 +1,494 @@
+package com.verbatim.client.auth;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The PemDecoder class decodes PEM encoded keys without regular expressions or intermediate strings.
+ * <p>
+ * The label of the {@code -----BEGIN X-----} line is detected, so that PKCS#8 ({@code PRIVATE KEY}),
+ * PKCS#1 ({@code RSA PRIVATE KEY}) and SEC1 ({@code EC PRIVATE KEY}) private keys, as well as X.509
+ * ({@code PUBLIC KEY}) and PKCS#1 ({@code RSA PUBLIC KEY}) public keys are accepted. Both RSA and EC
+ * keys are supported. Input without armor is read as a bare Base64 body. The Base64 body is read
+ * straight from the given characters or bytes, and the temporary DER arrays are zeroed once the key
+ * has been built.
+ */
+public final class PemDecoder {
+
+    static final String PUBLIC_KEY = "PUBLIC KEY";
+    static final String RSA_PUBLIC_KEY = "RSA PUBLIC KEY";
+    static final String PRIVATE_KEY = "PRIVATE KEY";
+    static final String RSA_PRIVATE_KEY = "RSA PRIVATE KEY";
+    static final String EC_PRIVATE_KEY = "EC PRIVATE KEY";
+
+    private static final String BEGIN = "-----BEGIN ";
+    private static final String END = "-----END ";
+    private static final String DASHES = "-----";
+
+    private static final byte DER_INTEGER = 0x02;
+    private static final byte DER_BIT_STRING = 0x03;
+    private static final byte DER_OCTET_STRING = 0x04;
+    private static final byte DER_OID = 0x06;
+    private static final byte DER_SEQUENCE = 0x30;
+    private static final byte DER_CONTEXT_0 = (byte) 0xa0;
+
+    /**
+     * DER encoded AlgorithmIdentifier of rsaEncryption: SEQUENCE { OID 1.2.840.113549.1.1.1, NULL }
+     */
+    private static final byte[] RSA_ALGORITHM = {
+            0x30, 0x0d, 0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x01, 0x01, 0x05, 0x00
+    };
+
+    /**
+     * DER encoded OID 1.2.840.113549.1.1.1 (rsaEncryption)
+     */
+    private static final byte[] RSA_OID = {0x06, 0x09, 0x2a, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xf7, 0x0d, 0x01, 0x01, 0x01};
+
+    /**
+     * DER encoded OID 1.2.840.10045.2.1 (id-ecPublicKey)
+     */
+    private static final byte[] EC_OID = {0x06, 0x07, 0x2a, (byte) 0x86, 0x48, (byte) 0xce, 0x3d, 0x02, 0x01};
+
+    /**
+     * Key factories are looked up once and reused, rather than twice per parsed key
+     */
+    private static final JcaPool<KeyFactory> RSA_KEY_FACTORIES = new JcaPool<>(() -> KeyFactory.getInstance("RSA"), JcaPool.DEFAULT_SIZE);
+    private static final JcaPool<KeyFactory> EC_KEY_FACTORIES = new JcaPool<>(() -> KeyFactory.getInstance("EC"), JcaPool.DEFAULT_SIZE);
+
+    private PemDecoder() {
+    }
+
+    /**
+     * Reads an RSA public key, encoded either as X.509 ({@code PUBLIC KEY}) or as PKCS#1 ({@code RSA PUBLIC KEY}).
+     *
+     * @param pem the PEM encoded public key. Must not be null.
+     * @return the public key.
+     * @throws TokenException if the PEM is malformed or does not hold an RSA public key.
+     */
+    public static RSAPublicKey readRSAPublicKey(CharSequence pem) throws TokenException {
+        PublicKey publicKey = readPublicKey(pem);
+        if (!(publicKey instanceof RSAPublicKey)) {
+            throw new TokenException("Not an RSA public key");
+        }
+        return (RSAPublicKey) publicKey;
+    }
+
+    /**
+     * Reads an RSA private key, encoded either as PKCS#8 ({@code PRIVATE KEY}) or as PKCS#1 ({@code RSA PRIVATE KEY}).
+     *
+     * @param pem the PEM encoded private key. Must not be null.
+     * @return the private key.
+     * @throws TokenException if the PEM is malformed or does not hold an RSA private key.
+     */
+    public static RSAPrivateKey readRSAPrivateKey(CharSequence pem) throws TokenException {
+        PrivateKey privateKey = readPrivateKey(pem);
+        if (!(privateKey instanceof RSAPrivateKey)) {
+            throw new TokenException("Not an RSA private key");
+        }
+        return (RSAPrivateKey) privateKey;
+    }
+
+    /**
+     * Reads an RSA private key from ASCII encoded PEM bytes, see {@link #readRSAPrivateKey(CharSequence)}.
+     * The position of the buffer is left unchanged.
+     *
+     * @param pem the ASCII encoded PEM private key. Must not be null.
+     * @return the private key.
+     * @throws TokenException if the PEM is malformed or does not hold an RSA private key.
+     */
+    public static RSAPrivateKey readRSAPrivateKey(ByteBuffer pem) throws TokenException {
+        PrivateKey privateKey = readPrivateKey(pem);
+        if (!(privateKey instanceof RSAPrivateKey)) {
+            throw new TokenException("Not an RSA private key");
+        }
+        return (RSAPrivateKey) privateKey;
+    }
+
+    /**
+     * Reads an RSA or EC public key, encoded either as X.509 ({@code PUBLIC KEY}) or as PKCS#1 ({@code RSA PUBLIC KEY}).
+     *
+     * @param pem the PEM encoded public key. Must not be null.
+     * @return the public key.
+     * @throws TokenException if the PEM is malformed or does not hold an RSA or EC public key.
+     */
+    public static PublicKey readPublicKey(CharSequence pem) throws TokenException {
+        Objects.requireNonNull(pem, "pem cannot be null");
+        return toPublicKey(decode(pem));
+    }
+
+    /**
+     * Reads an RSA or EC private key, encoded either as PKCS#8 ({@code PRIVATE KEY}), as PKCS#1
+     * ({@code RSA PRIVATE KEY}) or as SEC1 ({@code EC PRIVATE KEY}).
+     *
+     * @param pem the PEM encoded private key. Must not be null.
+     * @return the private key.
+     * @throws TokenException if the PEM is malformed or does not hold an RSA or EC private key.
+     */
+    public static PrivateKey readPrivateKey(CharSequence pem) throws TokenException {
+        Objects.requireNonNull(pem, "pem cannot be null");
+        return toPrivateKey(decode(pem));
+    }
+
+    /**
+     * Reads an RSA or EC private key from ASCII encoded PEM bytes, see {@link #readPrivateKey(CharSequence)}.
+     * The position of the buffer is left unchanged.
+     *
+     * @param pem the ASCII encoded PEM private key. Must not be null.
+     * @return the private key.
+     * @throws TokenException if the PEM is malformed or does not hold an RSA or EC private key.
+     */
+    public static PrivateKey readPrivateKey(ByteBuffer pem) throws TokenException {
+        Objects.requireNonNull(pem, "pem cannot be null");
+        return toPrivateKey(decode(new AsciiSequence(pem)));
+    }
+
+    /**
+     * Reads an RSA or EC public key from its X.509 SubjectPublicKeyInfo DER encoding. The array is zeroed.
+     */
+    static PublicKey readPublicKeyDer(byte[] der) throws TokenException {
+        return toPublicKey(new Pem(PUBLIC_KEY, der));
+    }
+
+    /**
+     * Reads an RSA or EC private key from its PKCS#8 PrivateKeyInfo DER encoding. The array is zeroed.
+     */
+    static PrivateKey readPrivateKeyDer(byte[] der) throws TokenException {
+        return toPrivateKey(new Pem(PRIVATE_KEY, der));
+    }
+
+    private static PublicKey toPublicKey(Pem pem) throws TokenException {
+        byte[] der = pem.der;
+        try {
+            if (RSA_PUBLIC_KEY.equals(pem.label)) {
+                // SubjectPublicKeyInfo: SEQUENCE { AlgorithmIdentifier, BIT STRING { 0 unused bits, RSAPublicKey } }
+                der = der(DER_SEQUENCE, RSA_ALGORITHM, der(DER_BIT_STRING, new byte[]{0}, pem.der));
+            } else if (pem.label != null && !PUBLIC_KEY.equals(pem.label)) {
+                throw new TokenException("Unsupported public key type: " + pem.label);
+            }
+            // SubjectPublicKeyInfo: SEQUENCE { SEQUENCE { OID, parameters }, BIT STRING }
+            DerReader reader = new DerReader(der);
+            reader.enter(DER_SEQUENCE);
+            reader.enter(DER_SEQUENCE);
+            JcaPool<KeyFactory> keyFactories = keyFactories(reader.element(DER_OID));
+            KeyFactory keyFactory = keyFactories.acquire();
+            try {
+                return keyFactory.generatePublic(new X509EncodedKeySpec(der));
+            } finally {
+                keyFactories.release(keyFactory);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new TokenException(e);
+        } finally {
+            wipe(pem.der);
+            wipe(der);
+        }
+    }
+
+    private static PrivateKey toPrivateKey(Pem pem) throws TokenException {
+        byte[] der = pem.der;
+        try {
+            if (RSA_PRIVATE_KEY.equals(pem.label)) {
+                // PrivateKeyInfo: SEQUENCE { INTEGER 0, AlgorithmIdentifier, OCTET STRING { RSAPrivateKey } }
+                byte[] octetString = der(DER_OCTET_STRING, pem.der);
+                der = der(DER_SEQUENCE, new byte[]{DER_INTEGER, 1, 0}, RSA_ALGORITHM, octetString);
+                wipe(octetString);
+            } else if (EC_PRIVATE_KEY.equals(pem.label)) {
+                der = wrapSec1(pem.der);
+            } else if (pem.label != null && !PRIVATE_KEY.equals(pem.label)) {
+                throw new TokenException("Unsupported private key type: " + pem.label);
+            }
+            // PrivateKeyInfo: SEQUENCE { INTEGER, SEQUENCE { OID, parameters }, OCTET STRING }
+            DerReader reader = new DerReader(der);
+            reader.enter(DER_SEQUENCE);
+            reader.skip(DER_INTEGER);
+            reader.enter(DER_SEQUENCE);
+            JcaPool<KeyFactory> keyFactories = keyFactories(reader.element(DER_OID));
+            KeyFactory keyFactory = keyFactories.acquire();
+            try {
+                return keyFactory.generatePrivate(new PKCS8EncodedKeySpec(der));
+            } finally {
+                keyFactories.release(keyFactory);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new TokenException(e);
+        } finally {
+            wipe(pem.der);
+            wipe(der);
+        }
+    }
+
+    /**
+     * Wraps a SEC1 ECPrivateKey into a PKCS#8 PrivateKeyInfo, using the named curve of its parameters.
+     */
+    private static byte[] wrapSec1(byte[] sec1) throws TokenException {
+        // ECPrivateKey: SEQUENCE { INTEGER 1, OCTET STRING, [0] { OID namedCurve } OPTIONAL, [1] BIT STRING OPTIONAL }
+        DerReader reader = new DerReader(sec1);
+        reader.enter(DER_SEQUENCE);
+        reader.skip(DER_INTEGER);
+        reader.skip(DER_OCTET_STRING);
+        if (!reader.at(DER_CONTEXT_0)) {
+            throw new TokenException("Unsupported EC private key: missing named curve");
+        }
+        reader.enter(DER_CONTEXT_0);
+        byte[] curve = reader.element(DER_OID);
+
+        // PrivateKeyInfo: SEQUENCE { INTEGER 0, SEQUENCE { id-ecPublicKey, namedCurve }, OCTET STRING { ECPrivateKey } }
+        byte[] octetString = der(DER_OCTET_STRING, sec1);
+        byte[] pkcs8 = der(DER_SEQUENCE, new byte[]{DER_INTEGER, 1, 0}, der(DER_SEQUENCE, EC_OID, curve), octetString);
+        wipe(octetString);
+        return pkcs8;
+    }
+
+    /**
+     * Returns the pool of key factories of the given DER encoded key algorithm OID.
+     */
+    private static JcaPool<KeyFactory> keyFactories(byte[] oid) throws TokenException {
+        if (Arrays.equals(oid, RSA_OID)) {
+            return RSA_KEY_FACTORIES;
+        }
+        if (Arrays.equals(oid, EC_OID)) {
+            return EC_KEY_FACTORIES;
+        }
+        throw new TokenException("Unsupported key algorithm. Only RSA and EC keys are supported");
+    }
+
+    /**
+     * Decodes the first PEM block of the given text.
+     *
+     * @param text the PEM text
+     * @return the label of the block, or null if the text has no armor, and its decoded DER content
+     * @throws TokenException if the armor or the Base64 body is malformed
+     */
+    static Pem decode(CharSequence text) throws TokenException {
+        String label = null;
+        int bodyStart = 0;
+        int bodyEnd = text.length();
+
+        int begin = indexOf(text, BEGIN, 0);
+        if (begin >= 0) {
+            int labelStart = begin + BEGIN.length();
+            int labelEnd = indexOf(text, DASHES, labelStart);
+            if (labelEnd < 0) {
+                throw new TokenException("Invalid PEM. Unterminated BEGIN line");
+            }
+            label = text.subSequence(labelStart, labelEnd).toString();
+            bodyStart = labelEnd + DASHES.length();
+            bodyEnd = indexOf(text, END, bodyStart);
+            if (bodyEnd < 0 || !matches(text, bodyEnd + END.length(), label)
+                    || !matches(text, bodyEnd + END.length() + label.length(), DASHES)) {
+                throw new TokenException("Invalid PEM. Missing END line for " + label);
+            }
+        }
+
+        byte[] base64 = new byte[bodyEnd - bodyStart];
+        try {
+            int length = 0;
+            for (int i = bodyStart; i < bodyEnd; i++) {
+                char c = text.charAt(i);
+                if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    continue;
+                }
+                if (c > 0x7f) {
+                    throw new TokenException("Invalid PEM. Unexpected character in Base64 body");
+                }
+                base64[length++] = (byte) c;
+            }
+            ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(base64, 0, length));
+            byte[] der = decoded.array();
+            if (decoded.arrayOffset() != 0 || decoded.remaining() != der.length) {
+                byte[] exact = Arrays.copyOfRange(der, decoded.arrayOffset() + decoded.position(),
+                        decoded.arrayOffset() + decoded.limit());
+                wipe(der);
+                der = exact;
+            }
+            return new Pem(label, der);
+        } catch (IllegalArgumentException e) {
+            throw new TokenException(e);
+        } finally {
+            wipe(base64);
+        }
+    }
+
+    /**
+     * Encodes a DER element with the given tag, whose content is the concatenation of the given parts.
+     */
+    private static byte[] der(byte tag, byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        int lengthBytes = length < 0x80 ? 0 : (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+        byte[] der = new byte[2 + lengthBytes + length];
+        int offset = 0;
+        der[offset++] = tag;
+        if (lengthBytes == 0) {
+            der[offset++] = (byte) length;
+        } else {
+            der[offset++] = (byte) (0x80 | lengthBytes);
+            for (int i = lengthBytes - 1; i >= 0; i--) {
+                der[offset++] = (byte) (length >>> (8 * i));
+            }
+        }
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, der, offset, part.length);
+            offset += part.length;
+        }
+        return der;
+    }
+
+    private static int indexOf(CharSequence text, String search, int from) {
+        for (int i = from, last = text.length() - search.length(); i <= last; i++) {
+            if (matches(text, i, search)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(CharSequence text, int offset, String search) {
+        if (offset + search.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < search.length(); i++) {
+            if (text.charAt(offset + i) != search.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void wipe(byte[] bytes) {
+        if (bytes != null) {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    /**
+     * A decoded PEM block.
+     */
+    static final class Pem {
+        final String label;
+        final byte[] der;
+
+        Pem(String label, byte[] der) {
+            this.label = label;
+            this.der = der;
+        }
+    }
+
+    /**
+     * A minimal reader of the DER structures found in key encodings.
+     */
+    private static final class DerReader {
+        private final byte[] der;
+        private int offset;
+
+        DerReader(byte[] der) {
+            this.der = der;
+        }
+
+        boolean at(byte tag) {
+            return offset < der.length && der[offset] == tag;
+        }
+
+        /**
+         * Moves into the content of the constructed element at the current offset.
+         */
+        void enter(byte tag) throws TokenException {
+            header(tag);
+        }
+
+        /**
+         * Moves past the element at the current offset.
+         */
+        void skip(byte tag) throws TokenException {
+            int length = header(tag);
+            offset += length;
+        }
+
+        /**
+         * Returns the element at the current offset, header included, and moves past it.
+         */
+        byte[] element(byte tag) throws TokenException {
+            int start = offset;
+            int length = header(tag);
+            offset += length;
+            return Arrays.copyOfRange(der, start, offset);
+        }
+
+        private int header(byte tag) throws TokenException {
+            if (!at(tag) || offset + 1 >= der.length) {
+                throw new TokenException("Invalid key encoding");
+            }
+            offset++;
+            int length = der[offset++] & 0xff;
+            if (length >= 0x80) {
+                int lengthBytes = length & 0x7f;
+                if (lengthBytes == 0 || lengthBytes > 3 || offset + lengthBytes > der.length) {
+                    throw new TokenException("Invalid key encoding");
+                }
+                length = 0;
+                for (int i = 0; i < lengthBytes; i++) {
+                    length = (length << 8) | (der[offset++] & 0xff);
+                }
+            }
+            if (offset + length > der.length) {
+                throw new TokenException("Invalid key encoding");
+            }
+            return length;
+        }
+    }
+
+    /**
+     * A read-only character view over ASCII bytes, so that PEM held in a byte buffer is decoded without copies.
+     */
+    private static final class AsciiSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiSequence(ByteBuffer bytes) {
+            this(bytes, bytes.position(), bytes.remaining());
+        }
+
+        private AsciiSequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(offset + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                builder.append(charAt(i));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.verbatim.client.auth;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap holder of the ASCII encoded private key of a {@link Key} loaded in secret-holder mode,
+ * see {@link KeyLoader#secretHolder(boolean)}.
+ * <p>
+ * The bytes live in a direct {@link ByteBuffer}: they are neither copied nor scanned by the garbage
+ * collector, and {@link #close()} overwrites them with zeros. The holder is never printed.
+ */
+final class Secret implements AutoCloseable {
+
+    private final ByteBuffer bytes;
+    private volatile boolean closed;
+
+    /**
+     * @param bytes the secret bytes, between position and limit. Owned by the new holder.
+     */
+    Secret(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the number of bytes of the secret.
+     */
+    int length() {
+        return bytes.remaining();
+    }
+
+    /**
+     * @return a read-only view of the secret bytes.
+     * @throws TokenException if the secret has been wiped.
+     */
+    ByteBuffer read() throws TokenException {
+        if (closed) {
+            throw new TokenException("The private key has been wiped");
+        }
+        return bytes.asReadOnlyBuffer();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Overwrites the secret bytes with zeros. Further reads fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            bytes.put(i, (byte) 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Secret(length=" + length() + ")";
+    }
+}
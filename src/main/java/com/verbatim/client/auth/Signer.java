@@ -0,0 +1,54 @@
+package com.verbatim.client.auth;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+
+/**
+ * The Signer interface computes the signature of the tokens of a key, so that signing can be
+ * delegated to any JCA provider, a key store or a hardware module instead of a PEM encoded
+ * private key parsed in process.
+ * <p>
+ * Tokens are serialized by this library; a Signer is only given their JWS signing input, the ASCII
+ * bytes {@code base64url(header) '.' base64url(payload)}. {@link JcaSigner} signs with a private key
+ * through the JCA, whether the key is held in memory, in a {@link java.security.KeyStore} such as a
+ * PKCS12 file, or by a specific {@link java.security.Provider} such as SunPKCS11.
+ * <p>
+ * Implementations must be thread-safe: a single Signer signs the tokens of all the threads of a
+ * {@link TokenFactory}.
+ */
+public interface Signer {
+
+    /**
+     * @return the ID of the key, used as the {@code kid} header of the tokens.
+     */
+    String getKeyId();
+
+    /**
+     * @return the ID of the organization, used as the {@code sub} claim of the tokens.
+     */
+    String getOrganizationId();
+
+    /**
+     * @return the JWS algorithm of the signatures, used as the {@code alg} header of the tokens.
+     */
+    SigningAlgorithm getAlgorithm();
+
+    /**
+     * @return the public key verifying the signatures, or null if it is not known.
+     */
+    default PublicKey getPublicKey() {
+        return null;
+    }
+
+    /**
+     * Signs the JWS signing input of a token.
+     *
+     * @param input  the buffer holding the signing input. Must not be modified.
+     * @param offset the offset of the signing input in {@code input}.
+     * @param length the length of the signing input.
+     * @return the JWS signature: the PKCS #1 v1.5 signature for RSA algorithms, the concatenated
+     * r and s values for ECDSA algorithms.
+     * @throws GeneralSecurityException if the signature fails.
+     */
+    byte[] sign(byte[] input, int offset, int length) throws GeneralSecurityException;
+}
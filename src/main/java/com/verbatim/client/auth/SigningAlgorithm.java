@@ -0,0 +1,179 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.algorithms.Algorithm;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+
+/**
+ * The SigningAlgorithm enum lists the JWS algorithms a {@link Key} can sign tokens with.
+ * <p>
+ * RSA keys sign with {@link #RS512} unless the key says otherwise. EC keys are much cheaper
+ * to sign with than RSA keys; they sign with the ECDSA algorithm matching their curve:
+ * {@link #ES256} for P-256, {@link #ES384} for P-384 and {@link #ES512} for P-521.
+ */
+public enum SigningAlgorithm {
+    RS256("SHA256withRSA", 0),
+    RS384("SHA384withRSA", 0),
+    RS512("SHA512withRSA", 0),
+    ES256("SHA256withECDSA", 64),
+    ES384("SHA384withECDSA", 96),
+    ES512("SHA512withECDSA", 132);
+
+    private final String jcaName;
+    private final boolean ec;
+    private final int ecSignatureLength;
+
+    SigningAlgorithm(String jcaName, int ecSignatureLength) {
+        this.jcaName = jcaName;
+        this.ec = ecSignatureLength > 0;
+        this.ecSignatureLength = ecSignatureLength;
+    }
+
+    /**
+     * Returns the algorithm with the given JWS name.
+     *
+     * @param name the JWS name of the algorithm, e.g. {@code RS512} or {@code ES256}.
+     * @return the algorithm.
+     * @throws RuntimeException if the algorithm is not supported.
+     */
+    public static SigningAlgorithm of(String name) {
+        for (SigningAlgorithm algorithm : values()) {
+            if (algorithm.name().equals(name)) {
+                return algorithm;
+            }
+        }
+        throw new RuntimeException("Unsupported algorithm " + name + ". Supported algorithms are RS256, RS384, RS512, ES256, ES384 and ES512");
+    }
+
+    /**
+     * Returns the default algorithm of the given public or private key: {@link #RS512} for RSA keys,
+     * and the ECDSA algorithm matching the curve for EC keys.
+     *
+     * @param key the public or private key.
+     * @return the algorithm.
+     * @throws TokenException if the key type or the curve is not supported.
+     */
+    static SigningAlgorithm of(java.security.Key key) throws TokenException {
+        if (key instanceof RSAKey) {
+            return RS512;
+        }
+        if (key instanceof ECKey) {
+            int fieldSize = ((ECKey) key).getParams().getCurve().getField().getFieldSize();
+            switch (fieldSize) {
+                case 256:
+                    return ES256;
+                case 384:
+                    return ES384;
+                case 521:
+                    return ES512;
+                default:
+                    throw new TokenException("Unsupported EC curve of " + fieldSize + " bits. Use P-256, P-384 or P-521");
+            }
+        }
+        throw new TokenException("Unsupported key type " + key.getAlgorithm());
+    }
+
+    /**
+     * @return true if this algorithm signs with EC keys, false if it signs with RSA keys.
+     */
+    public boolean isEc() {
+        return ec;
+    }
+
+    /**
+     * @return the name of the matching {@link java.security.Signature} algorithm, e.g. {@code SHA512withRSA}.
+     */
+    public String getJcaName() {
+        return jcaName;
+    }
+
+    /**
+     * @return the length of a JWS signature of this EC algorithm (r and s concatenated), or 0 for RSA algorithms.
+     */
+    int getEcSignatureLength() {
+        return ecSignatureLength;
+    }
+
+    /**
+     * Checks that the given keys can sign and verify with this algorithm.
+     *
+     * @throws TokenException if the keys do not match this algorithm.
+     */
+    void check(PublicKey publicKey, PrivateKey privateKey) throws TokenException {
+        if (ec) {
+            if (!(publicKey instanceof ECPublicKey) || !(privateKey instanceof ECPrivateKey)) {
+                throw new TokenException("Algorithm " + this + " requires an EC key pair");
+            }
+            if (this != of((ECPrivateKey) privateKey)) {
+                throw new TokenException("Algorithm " + this + " does not match the curve of the EC key");
+            }
+        } else if (!(publicKey instanceof RSAPublicKey) || !(privateKey instanceof RSAPrivateKey)) {
+            throw new TokenException("Algorithm " + this + " requires an RSA key pair");
+        }
+    }
+
+    /**
+     * Creates the java-jwt algorithm signing with the given keys.
+     *
+     * @throws TokenException if the keys do not match this algorithm.
+     */
+    Algorithm create(PublicKey publicKey, PrivateKey privateKey) throws TokenException {
+        check(publicKey, privateKey);
+        switch (this) {
+            case ES256:
+                return Algorithm.ECDSA256((ECPublicKey) publicKey, (ECPrivateKey) privateKey);
+            case ES384:
+                return Algorithm.ECDSA384((ECPublicKey) publicKey, (ECPrivateKey) privateKey);
+            case ES512:
+                return Algorithm.ECDSA512((ECPublicKey) publicKey, (ECPrivateKey) privateKey);
+            case RS256:
+                return Algorithm.RSA256((RSAPublicKey) publicKey, (RSAPrivateKey) privateKey);
+            case RS384:
+                return Algorithm.RSA384((RSAPublicKey) publicKey, (RSAPrivateKey) privateKey);
+            default:
+                return Algorithm.RSA512((RSAPublicKey) publicKey, (RSAPrivateKey) privateKey);
+        }
+    }
+
+    /**
+     * Creates the java-jwt algorithm verifying signatures with the given public key.
+     *
+     * @throws TokenException if the key does not match this algorithm.
+     */
+    Algorithm verifier(PublicKey publicKey) throws TokenException {
+        if (ec) {
+            if (!(publicKey instanceof ECPublicKey) || this != of(publicKey)) {
+                throw new TokenException("Algorithm " + this + " requires an EC public key of the matching curve");
+            }
+            ECPublicKey ecPublicKey = (ECPublicKey) publicKey;
+            switch (this) {
+                case ES256:
+                    return Algorithm.ECDSA256(ecPublicKey, null);
+                case ES384:
+                    return Algorithm.ECDSA384(ecPublicKey, null);
+                default:
+                    return Algorithm.ECDSA512(ecPublicKey, null);
+            }
+        }
+
+        if (!(publicKey instanceof RSAPublicKey)) {
+            throw new TokenException("Algorithm " + this + " requires an RSA public key");
+        }
+        RSAPublicKey rsaPublicKey = (RSAPublicKey) publicKey;
+        switch (this) {
+            case RS256:
+                return Algorithm.RSA256(rsaPublicKey, null);
+            case RS384:
+                return Algorithm.RSA384(rsaPublicKey, null);
+            default:
+                return Algorithm.RSA512(rsaPublicKey, null);
+        }
+    }
+}
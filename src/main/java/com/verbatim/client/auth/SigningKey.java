@@ -0,0 +1,152 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.algorithms.Algorithm;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Objects;
+
+/**
+ * The SigningKey class is the parsed, immutable counterpart of a {@link Key}.
+ * <p>
+ * Parsing the PEM encoded public and private parts of a key is far more expensive
+ * than signing a token with them, so a SigningKey is built once per {@link Key}
+ * (see {@link Key#signingKey()}) and then reused by every token signed with it.
+ * Instances are immutable and can be shared freely between threads.
+ * <p>
+ * RSA and EC keys are supported. The signing algorithm is the one named by {@code Key.getAlgorithm()}
+ * if set, otherwise it is chosen from the private key, see {@link SigningAlgorithm}.
+ * <p>
+ * A SigningKey can also wrap any {@link Signer}, see {@link #of(Signer)}, e.g. to sign with a key
+ * held by a key store or a hardware module: its private key is then unknown to this library.
+ */
+@Getter
+public final class SigningKey {
+
+    /**
+     * ID of the key, used as the {@code kid} header of the tokens
+     */
+    private final String keyId;
+
+    /**
+     * ID of the organization, used as the {@code sub} claim of the tokens
+     */
+    private final String organizationId;
+
+    /**
+     * The public key, or null if the {@link Signer} does not know it
+     */
+    private final PublicKey publicKey;
+
+    /**
+     * The private key, or null if the {@link Signer} does not expose it
+     */
+    private final PrivateKey privateKey;
+
+    /**
+     * The signer computing the signatures of the tokens
+     */
+    private final Signer signer;
+
+    /**
+     * The JWS algorithm of the tokens signed with this key
+     */
+    private final SigningAlgorithm signingAlgorithm;
+
+    /**
+     * The java-jwt algorithm bound to the parsed public and private keys, built on first use by
+     * {@link #getAlgorithm()}: tokens are signed by the {@link JwtEncoder}, so java-jwt is not even
+     * loaded by applications that only sign tokens
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile Algorithm algorithm;
+
+    /**
+     * The serializer of the tokens signed with this key, holding the pre-encoded header
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final JwtEncoder encoder;
+
+    SigningKey(Key key) throws TokenException {
+        Objects.requireNonNull(key, "key cannot be null");
+        this.keyId = key.getKeyId();
+        this.organizationId = key.getOrganizationId();
+        try {
+            this.publicKey = PemDecoder.readPublicKey(key.getPublicKey());
+            this.privateKey = key.privateKeySecret != null
+                    ? PemDecoder.readPrivateKey(key.privateKeySecret.read())
+                    : PemDecoder.readPrivateKey(key.getPrivateKey());
+            this.signingAlgorithm = key.getAlgorithm() == null
+                    ? SigningAlgorithm.of(privateKey)
+                    : SigningAlgorithm.of(key.getAlgorithm());
+            signingAlgorithm.check(publicKey, privateKey);
+            this.signer = JcaSigner.builder()
+                    .keyId(keyId)
+                    .organizationId(organizationId)
+                    .algorithm(signingAlgorithm)
+                    .privateKey(privateKey)
+                    .publicKey(publicKey)
+                    .build();
+            this.encoder = new JwtEncoder(signer);
+        } catch (RuntimeException e) {
+            throw new TokenException(e);
+        }
+    }
+
+    private SigningKey(Signer signer) {
+        this.keyId = signer.getKeyId();
+        this.organizationId = signer.getOrganizationId();
+        this.publicKey = signer.getPublicKey();
+        this.privateKey = signer instanceof JcaSigner ? ((JcaSigner) signer).getPrivateKey() : null;
+        this.signingAlgorithm = signer.getAlgorithm();
+        this.signer = signer;
+        this.encoder = new JwtEncoder(signer);
+    }
+
+    /**
+     * Returns a key signing its tokens with the given signer.
+     *
+     * @param signer the signer. Must not be null.
+     * @return the signing key.
+     * @throws NullPointerException if {@code signer} is null.
+     * @throws RuntimeException     if the key ID, the organization ID or the algorithm of the signer is not set.
+     */
+    public static SigningKey of(Signer signer) {
+        Objects.requireNonNull(signer, "signer cannot be null");
+        if (signer.getKeyId() == null || signer.getKeyId().isBlank()) {
+            throw new RuntimeException("keyId cannot be empty");
+        }
+        if (signer.getOrganizationId() == null || signer.getOrganizationId().isBlank()) {
+            throw new RuntimeException("organizationId cannot be empty");
+        }
+        Objects.requireNonNull(signer.getAlgorithm(), "algorithm cannot be null");
+        return new SigningKey(signer);
+    }
+
+    /**
+     * Returns the java-jwt algorithm signing and verifying with this key, e.g. to sign tokens with
+     * java-jwt's {@code JWTCreator}. Concurrent first calls may both create it, which is harmless.
+     *
+     * @return the java-jwt algorithm bound to the public and private keys.
+     * @throws IllegalStateException if the public or the private key is not known or not usable by java-jwt,
+     *                               see {@link #of(Signer)}.
+     */
+    public Algorithm getAlgorithm() {
+        Algorithm result = algorithm;
+        if (result == null) {
+            if (publicKey == null || privateKey == null) {
+                throw new IllegalStateException("The key pair of " + keyId + " is not known to this library");
+            }
+            try {
+                result = signingAlgorithm.create(publicKey, privateKey);
+            } catch (TokenException e) {
+                // checked when parsed from a Key, but the keys of a Signer may be opaque handles
+                throw new IllegalStateException(e);
+            }
+            algorithm = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,470 @@
+package com.verbatim.client.auth;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The SigningLimiter class bounds the number of tokens signed at the same time, so that a burst of
+ * signatures, each one a few milliseconds of CPU with RSA keys, does not starve the other threads of
+ * the application.
+ * <p>
+ * Up to {@code concurrency} threads sign at once, the number of processors by default. Beyond that,
+ * callers wait in line in a bounded queue, up to their deadline. Signatures are shed rather than queued
+ * when the queue is full, or when the expected wait, estimated from the recent signing times, exceeds
+ * the deadline; a shed signature fails at once with a {@link SigningRejectedException}. Before waiting
+ * or failing, a caller is served the last token signed through the limiter for the same key and claims,
+ * if it is still valid for at least {@code minRemaining} and does not expire after the expiration asked:
+ * its expiration may then be earlier than asked, never later. Tokens with a JWT ID are never shared.
+ * <p>
+ * The limiter can be shared across keys and factories, and is used by {@link TokenBuilder#limiter(SigningLimiter)}.
+ * Waits, rejections, stale tokens and the depth of the queue are reported to {@link TokenMetrics} and
+ * exposed by the getters of this class. Instances are thread-safe.
+ */
+public final class SigningLimiter {
+
+    private final String name;
+    private final int concurrency;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final Duration minRemaining;
+    private final int maximumSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<LatestKey, Latest> latest;
+    private final ArrayDeque<Condition> waiters = new ArrayDeque<>();
+    private int active;
+
+    /**
+     * Moving average of the signing time, in nanoseconds
+     */
+    private long meanSignNanos;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private SigningLimiter(Builder builder) {
+        this.name = builder.name;
+        this.concurrency = builder.concurrency;
+        this.maxQueued = builder.maxQueued;
+        this.maxWait = builder.maxWait;
+        this.minRemaining = builder.minRemaining;
+        this.maximumSize = builder.maximumSize;
+        this.latest = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LatestKey, Latest> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Creates a builder for a new limiter, initialized with the default settings: one signature per
+     * processor at once, up to 64 waiting callers for up to 1 second, and tokens served instead of
+     * waiting when still valid for 1 minute.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Signs a token with the given factory, waiting for up to {@code maxWait}.
+     *
+     * @param factory   the factory signing the token. Must not be null.
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @param expiresAt the expiration time of the token. A token served instead of signing expires at the latest then.
+     * @return a signed JWT as a String, possibly signed earlier for the same claims.
+     * @throws SigningRejectedException if the signature is shed.
+     * @throws TokenException           if the token cannot be signed.
+     */
+    public String sign(TokenFactory factory, String userId, String userEmail, Instant expiresAt) throws TokenException {
+        return sign(factory, userId, userEmail, null, expiresAt, maxWait);
+    }
+
+    /**
+     * Signs a token with the given factory and an optional JWT ID, waiting for up to {@code maxWait}.
+     *
+     * @param factory   the factory signing the token. Must not be null.
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @param jwtId     the JWT ID, or null to omit the claim. A token with a JWT ID is always signed.
+     * @param expiresAt the expiration time of the token. A token served instead of signing expires at the latest then.
+     * @return a signed JWT as a String, possibly signed earlier for the same claims when {@code jwtId} is null.
+     * @throws SigningRejectedException if the signature is shed.
+     * @throws TokenException           if the token cannot be signed.
+     */
+    public String sign(TokenFactory factory, String userId, String userEmail, String jwtId, Instant expiresAt) throws TokenException {
+        return sign(factory, userId, userEmail, jwtId, expiresAt, maxWait);
+    }
+
+    /**
+     * Signs a token with the given factory and an optional JWT ID, waiting for up to the given time.
+     *
+     * @param factory   the factory signing the token. Must not be null.
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @param jwtId     the JWT ID, or null to omit the claim. A token with a JWT ID is always signed.
+     * @param expiresAt the expiration time of the token. A token served instead of signing expires at the latest then.
+     * @param maxWait   the longest time to wait for a signing slot. Must not be null or negative.
+     * @return a signed JWT as a String, possibly signed earlier for the same claims when {@code jwtId} is null.
+     * @throws SigningRejectedException if the signature is shed.
+     * @throws TokenException           if the token cannot be signed, or if the thread is interrupted while waiting.
+     */
+    public String sign(TokenFactory factory, String userId, String userEmail, String jwtId, Instant expiresAt,
+                       Duration maxWait) throws TokenException {
+        Objects.requireNonNull(factory, "factory cannot be null");
+        Objects.requireNonNull(maxWait, "maxWait cannot be null");
+        if (maxWait.isNegative()) {
+            throw new RuntimeException("maxWait cannot be negative");
+        }
+        TokenMetrics metrics = MetricsHolder.current;
+        long start = System.nanoTime();
+        long wait = maxWait.toNanos();
+        LatestKey key = jwtId == null ? new LatestKey(factory.getSigningKey().getKeyId(), userId, userEmail) : null;
+
+        lock.lock();
+        try {
+            // waiting callers go first
+            if (active >= concurrency || !waiters.isEmpty()) {
+                String token = latest(key, factory, expiresAt);
+                if (token != null) {
+                    stale.increment();
+                    metrics.signingStale();
+                    return token;
+                }
+                if (waiters.size() >= maxQueued) {
+                    throw reject(metrics, "the queue is full");
+                }
+                // the waiting callers are admitted by batches of concurrency, each batch after about one signature
+                if (meanSignNanos * (waiters.size() / concurrency + 1) > wait) {
+                    throw reject(metrics, "the expected wait exceeds " + maxWait.toMillis() + " ms");
+                }
+                token = await(metrics, key, factory, expiresAt, start + wait);
+                if (token != null) {
+                    return token;
+                }
+            } else {
+                active++;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long signStart = System.nanoTime();
+        long waited = signStart - start;
+        admitted.increment();
+        waitNanos.add(waited);
+        metrics.signingAdmitted(waited);
+        String token = null;
+        try {
+            token = factory.sign(userId, userEmail, jwtId, expiresAt);
+            return token;
+        } finally {
+            release(key, token, expiresAt, System.nanoTime() - signStart);
+        }
+    }
+
+    /**
+     * Waits in line for a signing slot, with the lock held, and takes it.
+     *
+     * @return null once the slot is taken, or a still valid token signed for the same claims meanwhile
+     * if the deadline is reached.
+     */
+    private String await(TokenMetrics metrics, LatestKey key, TokenFactory factory, Instant expiresAt, long deadline) throws TokenException {
+        Condition turn = lock.newCondition();
+        waiters.addLast(turn);
+        metrics.signingQueueDepth(name, waiters.size());
+        try {
+            while (waiters.peekFirst() != turn || active >= concurrency) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    String token = latest(key, factory, expiresAt);
+                    if (token == null) {
+                        throw reject(metrics, "no signing slot within the deadline");
+                    }
+                    stale.increment();
+                    metrics.signingStale();
+                    return token;
+                }
+                turn.awaitNanos(remaining);
+            }
+            active++;
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TokenException("Interrupted while waiting to sign", e);
+        } finally {
+            waiters.remove(turn);
+            metrics.signingQueueDepth(name, waiters.size());
+            // the next caller in line may take a free slot, e.g. when this one gave up
+            signalNext();
+        }
+    }
+
+    private void release(LatestKey key, String token, Instant expiresAt, long signNanos) {
+        lock.lock();
+        try {
+            active--;
+            if (token != null) {
+                meanSignNanos = meanSignNanos == 0 ? signNanos : meanSignNanos + (signNanos - meanSignNanos) / 8;
+                if (key != null) {
+                    latest.put(key, new Latest(token, expiresAt));
+                }
+            }
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalNext() {
+        Condition next = waiters.peekFirst();
+        if (next != null && active < concurrency) {
+            next.signal();
+        }
+    }
+
+    /**
+     * Returns the last token signed for the given claims if still valid for {@code minRemaining}, and not
+     * valid beyond the given expiration, with the lock held.
+     */
+    private String latest(LatestKey key, TokenFactory factory, Instant expiresAt) {
+        if (key == null || expiresAt == null) {
+            return null;
+        }
+        Latest token = latest.get(key);
+        if (token == null || token.expiresAt.isAfter(expiresAt)
+                || !token.expiresAt.isAfter(factory.getClock().instant().plus(minRemaining))) {
+            return null;
+        }
+        return token.value;
+    }
+
+    private SigningRejectedException reject(TokenMetrics metrics, String reason) {
+        rejected.increment();
+        metrics.signingRejected();
+        return new SigningRejectedException("Signature rejected by limiter " + name + ": " + reason);
+    }
+
+    /**
+     * @return the number of tokens being signed.
+     */
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of callers waiting for a signing slot.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of signatures admitted, after waiting or not.
+     */
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    /**
+     * @return the number of signatures shed.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the number of tokens served instead of signing a new one.
+     */
+    public long getStaleCount() {
+        return stale.sum();
+    }
+
+    /**
+     * @return the mean time waited for a signing slot by the admitted signatures, in microseconds.
+     */
+    public double getMeanWaitMicros() {
+        long count = admitted.sum();
+        return count == 0 ? 0 : waitNanos.sum() / 1000.0 / count;
+    }
+
+    /**
+     * @return the name of the limiter, under which its queue depth is reported to {@link TokenMetrics}.
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "SigningLimiter(name=" + name
+                + ", concurrency=" + concurrency
+                + ", active=" + getActiveCount()
+                + ", queueDepth=" + getQueueDepth()
+                + ", admitted=" + getAdmittedCount()
+                + ", rejected=" + getRejectedCount()
+                + ", stale=" + getStaleCount()
+                + ", meanWaitMicros=" + String.format("%.1f", getMeanWaitMicros()) + ")";
+    }
+
+    @Value
+    private static class LatestKey {
+        String keyId;
+        String userId;
+        String userEmail;
+    }
+
+    private static final class Latest {
+        final String value;
+        final Instant expiresAt;
+
+        Latest(String value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Builder of {@link SigningLimiter} instances.
+     */
+    public static final class Builder {
+        private String name = "signing";
+        private int concurrency = Runtime.getRuntime().availableProcessors();
+        private int maxQueued = 64;
+        private Duration maxWait = Duration.ofSeconds(1);
+        private Duration minRemaining = Duration.ofMinutes(1);
+        private int maximumSize = 10_000;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the name under which the queue depth is reported, {@code signing} by default.
+         *
+         * @param name the name of the limiter. Must not be null or blank.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code name} is null.
+         * @throws RuntimeException     if {@code name} is blank.
+         */
+        public Builder name(String name) {
+            Objects.requireNonNull(name, "name cannot be null");
+            if (name.isBlank()) {
+                throw new RuntimeException("name cannot be empty");
+            }
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets the number of tokens signed at the same time.
+         *
+         * @param concurrency the number of signatures. Must be positive.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code concurrency} is not positive.
+         */
+        public Builder concurrency(int concurrency) {
+            if (concurrency <= 0) {
+                throw new RuntimeException("concurrency must be positive");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Sets the number of callers waiting for a signing slot, beyond which signatures are shed.
+         *
+         * @param maxQueued the number of callers. Must not be negative; 0 sheds every signature beyond the concurrency.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code maxQueued} is negative.
+         */
+        public Builder maxQueued(int maxQueued) {
+            if (maxQueued < 0) {
+                throw new RuntimeException("maxQueued cannot be negative");
+            }
+            this.maxQueued = maxQueued;
+            return this;
+        }
+
+        /**
+         * Sets the default time callers wait for a signing slot.
+         *
+         * @param maxWait the longest wait. Must not be negative.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code maxWait} is null.
+         * @throws RuntimeException     if {@code maxWait} is negative.
+         */
+        public Builder maxWait(Duration maxWait) {
+            Objects.requireNonNull(maxWait, "maxWait cannot be null");
+            if (maxWait.isNegative()) {
+                throw new RuntimeException("maxWait cannot be negative");
+            }
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * Sets the minimal validity left of a token served instead of signing a new one.
+         *
+         * @param minRemaining the minimal validity left. Must not be negative.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code minRemaining} is null.
+         * @throws RuntimeException     if {@code minRemaining} is negative.
+         */
+        public Builder minRemaining(Duration minRemaining) {
+            Objects.requireNonNull(minRemaining, "minRemaining cannot be null");
+            if (minRemaining.isNegative()) {
+                throw new RuntimeException("minRemaining cannot be negative");
+            }
+            this.minRemaining = minRemaining;
+            return this;
+        }
+
+        /**
+         * Sets the number of claims whose last token is kept, the least recently used being dropped.
+         *
+         * @param maximumSize the number of claims. Must be positive.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code maximumSize} is not positive.
+         */
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize <= 0) {
+                throw new RuntimeException("maximumSize must be positive");
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Builds the limiter.
+         *
+         * @return a new limiter.
+         */
+        public SigningLimiter build() {
+            return new SigningLimiter(this);
+        }
+    }
+}
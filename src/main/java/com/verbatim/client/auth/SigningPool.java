@@ -0,0 +1,44 @@
+package com.verbatim.client.auth;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The shared pool of the asynchronous signatures, see {@link AsyncTokenSigner} and {@link TokenCache}.
+ * <p>
+ * Signing is CPU bound, so the pool has one daemon thread per available processor and a bounded
+ * queue: when the queue is full, new signatures are rejected rather than queued without limit.
+ * The pool is created on first use.
+ */
+final class SigningPool {
+
+    /**
+     * Maximum number of queued signatures per thread
+     */
+    static final int QUEUE_SIZE_PER_THREAD = 1024;
+
+    private SigningPool() {
+    }
+
+    static Executor shared() {
+        return Holder.POOL;
+    }
+
+    private static final class Holder {
+        static final ThreadPoolExecutor POOL = create(Runtime.getRuntime().availableProcessors());
+    }
+
+    static ThreadPoolExecutor create(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_SIZE_PER_THREAD),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "verbatim-token-signer-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
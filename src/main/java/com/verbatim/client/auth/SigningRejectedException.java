@@ -0,0 +1,12 @@
+package com.verbatim.client.auth;
+
+/**
+ * Thrown by a {@link SigningLimiter} that sheds a signature: its queue is full, or the token could not be
+ * signed before the deadline of the caller, and no still valid token could be served instead.
+ */
+public class SigningRejectedException extends TokenException {
+
+    public SigningRejectedException(String message) {
+        super(message);
+    }
+}
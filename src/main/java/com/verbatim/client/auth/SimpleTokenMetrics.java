@@ -0,0 +1,370 @@
+package com.verbatim.client.auth;
+
+import lombok.extern.java.Log;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * The SimpleTokenMetrics class is a dependency-free {@link TokenMetrics} implementation: it counts
+ * events with {@link LongAdder}s and records signing times in power-of-two histograms, one per key.
+ * <p>
+ * The figures can be exposed as an MXBean with {@link #registerMBean()} and written to
+ * java.util.logging with {@link #log()}. Recording does not allocate, except once per new key ID,
+ * token pool or signing limiter name.
+ * <pre>
+ * SimpleTokenMetrics metrics = new SimpleTokenMetrics();
+ * metrics.registerMBean();
+ * TokenMetrics.install(metrics);
+ * </pre>
+ */
+@Log
+public class SimpleTokenMetrics implements TokenMetrics, SimpleTokenMetricsMXBean {
+
+    static final String OBJECT_NAME = "com.verbatim.client.auth:type=TokenMetrics";
+
+    private final LongAdder keyLoads = new LongAdder();
+    private final LongAdder keyParses = new LongAdder();
+    private final LongAdder keyParseCacheHits = new LongAdder();
+    private final LongAdder tokenCacheHits = new LongAdder();
+    private final LongAdder tokenCacheMisses = new LongAdder();
+    private final LongAdder tokenPoolHits = new LongAdder();
+    private final LongAdder tokenPoolMisses = new LongAdder();
+    private final ConcurrentHashMap<String, AtomicInteger> tokenPoolDepths = new ConcurrentHashMap<>();
+    private final LongAdder signingRejections = new LongAdder();
+    private final LongAdder signingStaleTokens = new LongAdder();
+    private final Histogram signingWaits = new Histogram(null);
+    private final ConcurrentHashMap<String, AtomicInteger> signingQueueDepths = new ConcurrentHashMap<>();
+    private final LongAdder keyReloads = new LongAdder();
+    private final LongAdder[] failures = new LongAdder[Failure.values().length];
+    private final ConcurrentHashMap<String, Histogram> signatures = new ConcurrentHashMap<>();
+
+    public SimpleTokenMetrics() {
+        for (int i = 0; i < failures.length; i++) {
+            failures[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void keyLoaded(long nanos) {
+        keyLoads.increment();
+    }
+
+    @Override
+    public void keyParsed(String keyId, long nanos) {
+        keyParses.increment();
+    }
+
+    @Override
+    public void keyParseCacheHit(String keyId) {
+        keyParseCacheHits.increment();
+    }
+
+    @Override
+    public void tokenSigned(String keyId, SigningAlgorithm algorithm, long nanos) {
+        Histogram histogram = signatures.get(keyId);
+        if (histogram == null) {
+            histogram = signatures.computeIfAbsent(keyId, id -> new Histogram(algorithm));
+        }
+        histogram.record(nanos);
+    }
+
+    @Override
+    public void tokenCacheHit() {
+        tokenCacheHits.increment();
+    }
+
+    @Override
+    public void tokenCacheMiss() {
+        tokenCacheMisses.increment();
+    }
+
+    @Override
+    public void tokenPoolHit() {
+        tokenPoolHits.increment();
+    }
+
+    @Override
+    public void tokenPoolMiss() {
+        tokenPoolMisses.increment();
+    }
+
+    @Override
+    public void tokenPoolDepth(String pool, int depth) {
+        AtomicInteger gauge = tokenPoolDepths.get(pool);
+        if (gauge == null) {
+            gauge = tokenPoolDepths.computeIfAbsent(pool, name -> new AtomicInteger());
+        }
+        gauge.set(depth);
+    }
+
+    @Override
+    public void tokenPoolClosed(String pool) {
+        tokenPoolDepths.remove(pool);
+    }
+
+    @Override
+    public void signingAdmitted(long waitNanos) {
+        signingWaits.record(waitNanos);
+    }
+
+    @Override
+    public void signingRejected() {
+        signingRejections.increment();
+    }
+
+    @Override
+    public void signingStale() {
+        signingStaleTokens.increment();
+    }
+
+    @Override
+    public void signingQueueDepth(String limiter, int depth) {
+        AtomicInteger gauge = signingQueueDepths.get(limiter);
+        if (gauge == null) {
+            gauge = signingQueueDepths.computeIfAbsent(limiter, name -> new AtomicInteger());
+        }
+        gauge.set(depth);
+    }
+
+    @Override
+    public void keyReloaded(String keyId) {
+        keyReloads.increment();
+    }
+
+    @Override
+    public void failure(Failure cause) {
+        failures[cause.ordinal()].increment();
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server, under {@code com.verbatim.client.auth:type=TokenMetrics}.
+     *
+     * @throws RuntimeException if the registration fails, e.g. if another instance is already registered.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new RuntimeException("Unable to register the token metrics MBean", e);
+        }
+    }
+
+    /**
+     * Unregisters these metrics from the platform MBean server, if registered.
+     */
+    public void unregisterMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.log(Level.FINE, "Unable to unregister the token metrics MBean", e);
+        }
+    }
+
+    /**
+     * Writes a summary of these metrics to java.util.logging, at INFO level. Call it periodically to report the metrics.
+     */
+    public void log() {
+        log.info(toString());
+    }
+
+    @Override
+    public long getKeyLoadCount() {
+        return keyLoads.sum();
+    }
+
+    @Override
+    public long getKeyParseCount() {
+        return keyParses.sum();
+    }
+
+    @Override
+    public long getKeyParseCacheHitCount() {
+        return keyParseCacheHits.sum();
+    }
+
+    @Override
+    public long getTokenCacheHitCount() {
+        return tokenCacheHits.sum();
+    }
+
+    @Override
+    public long getTokenCacheMissCount() {
+        return tokenCacheMisses.sum();
+    }
+
+    @Override
+    public double getTokenCacheHitRatio() {
+        long hits = tokenCacheHits.sum();
+        long total = hits + tokenCacheMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getTokenPoolHitCount() {
+        return tokenPoolHits.sum();
+    }
+
+    @Override
+    public long getTokenPoolMissCount() {
+        return tokenPoolMisses.sum();
+    }
+
+    @Override
+    public Map<String, Integer> getTokenPoolDepths() {
+        return depths(tokenPoolDepths);
+    }
+
+    @Override
+    public long getSigningAdmittedCount() {
+        return signingWaits.count.sum();
+    }
+
+    @Override
+    public long getSigningRejectedCount() {
+        return signingRejections.sum();
+    }
+
+    @Override
+    public long getSigningStaleCount() {
+        return signingStaleTokens.sum();
+    }
+
+    @Override
+    public double getSigningWaitMeanMicros() {
+        return signingWaits.meanMicros();
+    }
+
+    @Override
+    public long getSigningWaitP99Micros() {
+        return signingWaits.percentileMicros(0.99);
+    }
+
+    @Override
+    public Map<String, Integer> getSigningQueueDepths() {
+        return depths(signingQueueDepths);
+    }
+
+    @Override
+    public long getKeyReloadCount() {
+        return keyReloads.sum();
+    }
+
+    @Override
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Failure failure : Failure.values()) {
+            counts.put(failure.name(), failures[failure.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getSignatureCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        signatures.forEach((keyId, histogram) -> counts.put(histogram.name(keyId), histogram.count.sum()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getSignatureMeanMicros() {
+        Map<String, Double> means = new TreeMap<>();
+        signatures.forEach((keyId, histogram) -> means.put(histogram.name(keyId), histogram.meanMicros()));
+        return means;
+    }
+
+    @Override
+    public Map<String, Long> getSignatureP99Micros() {
+        Map<String, Long> percentiles = new TreeMap<>();
+        signatures.forEach((keyId, histogram) -> percentiles.put(histogram.name(keyId), histogram.percentileMicros(0.99)));
+        return percentiles;
+    }
+
+    private static Map<String, Integer> depths(Map<String, AtomicInteger> gauges) {
+        Map<String, Integer> depths = new TreeMap<>();
+        gauges.forEach((name, gauge) -> depths.put(name, gauge.get()));
+        return depths;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenMetrics(keyLoads=" + getKeyLoadCount()
+                + ", keyParses=" + getKeyParseCount()
+                + ", keyParseCacheHits=" + getKeyParseCacheHitCount()
+                + ", tokenCacheHitRatio=" + String.format("%.3f", getTokenCacheHitRatio())
+                + ", tokenPoolHits=" + getTokenPoolHitCount()
+                + ", tokenPoolMisses=" + getTokenPoolMissCount()
+                + ", tokenPoolDepths=" + getTokenPoolDepths()
+                + ", signingAdmitted=" + getSigningAdmittedCount()
+                + ", signingRejected=" + getSigningRejectedCount()
+                + ", signingStale=" + getSigningStaleCount()
+                + ", signingWaitP99Micros=" + getSigningWaitP99Micros()
+                + ", signingQueueDepths=" + getSigningQueueDepths()
+                + ", keyReloads=" + getKeyReloadCount()
+                + ", failures=" + getFailureCounts()
+                + ", signatures=" + getSignatureCounts()
+                + ", signatureMeanMicros=" + getSignatureMeanMicros()
+                + ", signatureP99Micros=" + getSignatureP99Micros() + ")";
+    }
+
+    /**
+     * Signing times of a key, or waiting times, in buckets of power-of-two microseconds.
+     */
+    private static final class Histogram {
+        private static final int BUCKETS = 32;
+
+        final SigningAlgorithm algorithm;
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        Histogram(SigningAlgorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            long micros = nanos / 1000;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+        }
+
+        String name(String keyId) {
+            return keyId + " (" + algorithm + ")";
+        }
+
+        double meanMicros() {
+            long samples = count.sum();
+            return samples == 0 ? 0 : totalNanos.sum() / 1000.0 / samples;
+        }
+
+        long percentileMicros(double percentile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += buckets.get(i);
+            }
+            long threshold = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold && seen > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.verbatim.client.auth;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link SimpleTokenMetrics}.
+ */
+public interface SimpleTokenMetricsMXBean {
+
+    long getKeyLoadCount();
+
+    long getKeyParseCount();
+
+    long getKeyParseCacheHitCount();
+
+    long getTokenCacheHitCount();
+
+    long getTokenCacheMissCount();
+
+    /**
+     * @return the share of token cache lookups served from the cache, between 0 and 1.
+     */
+    double getTokenCacheHitRatio();
+
+    long getTokenPoolHitCount();
+
+    long getTokenPoolMissCount();
+
+    /**
+     * @return the number of pre-signed tokens held, by token pool.
+     */
+    Map<String, Integer> getTokenPoolDepths();
+
+    long getSigningAdmittedCount();
+
+    long getSigningRejectedCount();
+
+    long getSigningStaleCount();
+
+    /**
+     * @return the mean time waited for a signing slot of a {@link SigningLimiter}, in microseconds.
+     */
+    double getSigningWaitMeanMicros();
+
+    /**
+     * @return the 99th percentile of the time waited for a signing slot, in microseconds, rounded up to the next power of two.
+     */
+    long getSigningWaitP99Micros();
+
+    /**
+     * @return the number of callers waiting for a signing slot, by signing limiter.
+     */
+    Map<String, Integer> getSigningQueueDepths();
+
+    long getKeyReloadCount();
+
+    /**
+     * @return the number of failures by cause.
+     */
+    Map<String, Long> getFailureCounts();
+
+    /**
+     * @return the number of signed tokens by key ID and algorithm.
+     */
+    Map<String, Long> getSignatureCounts();
+
+    /**
+     * @return the mean signing time in microseconds, by key ID and algorithm.
+     */
+    Map<String, Double> getSignatureMeanMicros();
+
+    /**
+     * @return the 99th percentile of the signing time in microseconds, by key ID and algorithm.
+     * Percentiles are rounded up to the next power of two.
+     */
+    Map<String, Long> getSignatureP99Micros();
+}
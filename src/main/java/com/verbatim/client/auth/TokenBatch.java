@@ -0,0 +1,156 @@
+package com.verbatim.client.auth;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The TokenBatch class signs tokens for many users at once, e.g. to pre-generate the tokens of
+ * a whole cohort before a bulk transcription job.
+ * <p>
+ * The claim sets are split into chunks signed in parallel on the configured executor, a
+ * {@link ForkJoinPool} by default; on Java 21+ a virtual thread per task executor can be used as
+ * well. All the workers share the key parsed once by the {@link TokenFactory}. Results are returned
+ * in input order, and a claim set that fails to sign is reported in its result instead of
+ * aborting the whole batch.
+ */
+public final class TokenBatch {
+
+    /**
+     * Number of chunks per worker, so that a slow worker does not hold back the whole batch
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private final TokenFactory factory;
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Creates a batch signer running on the common {@link ForkJoinPool}.
+     *
+     * @param factory the factory signing the tokens. Must not be null.
+     */
+    public TokenBatch(TokenFactory factory) {
+        this(factory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a batch signer running on the given executor.
+     *
+     * @param factory  the factory signing the tokens. Must not be null.
+     * @param executor the executor running the signatures. Must not be null.
+     */
+    public TokenBatch(TokenFactory factory, Executor executor) {
+        this.factory = Objects.requireNonNull(factory, "factory cannot be null");
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+        this.parallelism = executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Signs one token per claim set, all expiring at the same time.
+     *
+     * @param claims    the claim sets. Must not be null nor contain null elements.
+     * @param expiresAt the expiration time of the tokens. Must not be null, in the past or more than 1 day in the future.
+     * @return one result per claim set, in input order.
+     * @throws NullPointerException if {@code claims} or {@code expiresAt} is null.
+     * @throws RuntimeException     if {@code expiresAt} is out of range.
+     */
+    public List<Result> sign(Collection<TokenClaims> claims, Instant expiresAt) {
+        Objects.requireNonNull(claims, "claims cannot be null");
+        Objects.requireNonNull(expiresAt, "expiresAt cannot be null");
+        TokenFactory.assertExpiresAt(expiresAt, factory.getClock().instant());
+
+        TokenClaims[] input = claims.toArray(new TokenClaims[0]);
+        Result[] results = new Result[input.length];
+        int chunkSize = Math.max(1, (input.length + parallelism * CHUNKS_PER_WORKER - 1) / (parallelism * CHUNKS_PER_WORKER));
+
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int start = 0; start < input.length; start += chunkSize) {
+            int from = start;
+            int to = Math.min(input.length, start + chunkSize);
+            try {
+                chunks.add(CompletableFuture.runAsync(() -> sign(input, results, from, to, expiresAt), executor));
+            } catch (RuntimeException e) {
+                // the executor rejected the chunk
+                for (int i = from; i < to; i++) {
+                    results[i] = new Result(input[i], null, e);
+                }
+            }
+        }
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Signs one token per claim set, all expiring at the same time.
+     *
+     * @param claims    the claim sets. Must not be null nor contain null elements.
+     * @param expiresAt the expiration time of the tokens. Must not be null, in the past or more than 1 day in the future.
+     * @return one result per claim set, in stream order.
+     * @throws NullPointerException if {@code claims} or {@code expiresAt} is null.
+     * @throws RuntimeException     if {@code expiresAt} is out of range.
+     */
+    public List<Result> sign(Stream<TokenClaims> claims, Instant expiresAt) {
+        Objects.requireNonNull(claims, "claims cannot be null");
+        return sign(claims.collect(Collectors.toList()), expiresAt);
+    }
+
+    private void sign(TokenClaims[] input, Result[] results, int from, int to, Instant expiresAt) {
+        for (int i = from; i < to; i++) {
+            TokenClaims claims = input[i];
+            try {
+                Objects.requireNonNull(claims, "claims cannot contain null");
+                results[i] = new Result(claims, factory.sign(claims.getUserId(), claims.getUserEmail(), expiresAt), null);
+            } catch (Exception e) {
+                results[i] = new Result(claims, null, e);
+            }
+        }
+    }
+
+    /**
+     * The outcome of signing one claim set of a batch: either a token or the error that prevented signing it.
+     */
+    @Getter
+    public static final class Result {
+
+        /**
+         * The claim set of the token
+         */
+        private final TokenClaims claims;
+
+        /**
+         * The signed token, or null if signing failed
+         */
+        private final String token;
+
+        /**
+         * The reason why signing failed, or null if the token was signed
+         */
+        private final Exception error;
+
+        Result(TokenClaims claims, String token, Exception error) {
+            this.claims = claims;
+            this.token = token;
+            this.error = error;
+        }
+
+        /**
+         * @return true if the token was signed.
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.verbatim.client.auth;
+
+import lombok.Value;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The TokenCache class keeps signed tokens until they are about to expire, so that a token
+ * is signed once and reused by every call made on behalf of the same user.
+ * <p>
+ * Tokens are cached by key ID, user ID and user email. A cached token is returned as is until
+ * it enters its refresh-ahead window; from then on it is still returned while a new token is
+ * signed in the background. Only an expired or missing token makes the caller wait for the
+ * signature. Concurrent callers asking for the same token share a single signature.
+ * <p>
+ * The cache is bounded: once {@code maximumSize} entries are held, the least recently used
+ * entry is evicted. Instances are thread-safe and meant to be shared, including across keys.
+ * <p>
+ * Expirations are computed with the clock of the cache, the system clock by default; it should be
+ * the clock of the factories, see {@link Builder#clock(Clock)}.
+ */
+public final class TokenCache {
+
+    private final int maximumSize;
+    private final Duration lifetime;
+    private final Duration refreshAhead;
+    private final Executor executor;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<CacheKey, Entry> entries;
+
+    private TokenCache(Builder builder) {
+        this.maximumSize = builder.maximumSize;
+        this.lifetime = builder.lifetime;
+        this.refreshAhead = builder.refreshAhead;
+        this.executor = builder.executor;
+        this.clock = builder.clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            // qualified: within a LinkedHashMap, Entry is the inherited Map.Entry
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, TokenCache.Entry> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Creates a builder for a new cache, initialized with the default settings: up to 10 000
+     * tokens valid for 1 hour and refreshed in the background 5 minutes before they expire.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns a valid token without user claims, signed by the given factory.
+     *
+     * @param factory the factory signing the token. Must not be null.
+     * @return a signed JWT as a String.
+     * @throws TokenException if the token has to be signed and the signature fails.
+     */
+    public String get(TokenFactory factory) throws TokenException {
+        return get(factory, null, null);
+    }
+
+    /**
+     * Returns a valid token with the given user claims, signed by the given factory.
+     *
+     * @param factory   the factory signing the token. Must not be null.
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @return a signed JWT as a String.
+     * @throws TokenException if the token has to be signed and the signature fails.
+     */
+    public String get(TokenFactory factory, String userId, String userEmail) throws TokenException {
+        Objects.requireNonNull(factory, "factory cannot be null");
+        Entry entry = entry(new CacheKey(factory.getSigningKey().getKeyId(), userId, userEmail));
+        String cached = cached(entry, factory, userId, userEmail);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return entry.refresh(factory, userId, userEmail, Runnable::run).join().value;
+        } catch (CompletionException e) {
+            throw tokenException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns a valid token without user claims, signed by the given factory, without blocking.
+     *
+     * @param factory the factory signing the token. Must not be null.
+     * @return a future completed with a signed JWT.
+     * @see #getAsync(TokenFactory, String, String)
+     */
+    public CompletableFuture<String> getAsync(TokenFactory factory) {
+        return getAsync(factory, null, null);
+    }
+
+    /**
+     * Returns a valid token with the given user claims, signed by the given factory, without blocking.
+     * <p>
+     * A cached token is returned as an already completed future. Otherwise, the token is signed on
+     * the executor of this cache, a bounded pool with one thread per processor by default, and the
+     * future completes once signed; concurrent callers share the same signature.
+     *
+     * @param factory   the factory signing the token. Must not be null.
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @return a future completed with a signed JWT, or with a {@link TokenException} if the signature fails
+     * or cannot be scheduled.
+     */
+    public CompletableFuture<String> getAsync(TokenFactory factory, String userId, String userEmail) {
+        Objects.requireNonNull(factory, "factory cannot be null");
+        Entry entry = entry(new CacheKey(factory.getSigningKey().getKeyId(), userId, userEmail));
+        String cached = cached(entry, factory, userId, userEmail);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        entry.refresh(factory, userId, userEmail, executor).whenComplete((signed, e) -> {
+            if (e == null) {
+                future.complete(signed.value);
+            } else {
+                future.completeExceptionally(tokenException(e));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns the token of an entry if it has not expired, and refreshes it in the background when it
+     * enters its refresh-ahead window.
+     *
+     * @return the cached token, or null if the caller has to wait for a new one.
+     */
+    private String cached(Entry entry, TokenFactory factory, String userId, String userEmail) {
+        Token token = entry.token;
+        Instant now = clock.instant();
+        if (token != null && now.isBefore(token.expiresAt)) {
+            if (!now.isBefore(token.refreshAt)) {
+                entry.refresh(factory, userId, userEmail, executor);
+            }
+            MetricsHolder.current.tokenCacheHit();
+            return token.value;
+        }
+        MetricsHolder.current.tokenCacheMiss();
+        return null;
+    }
+
+    private static TokenException tokenException(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof TokenException ? (TokenException) e : new TokenException(e);
+    }
+
+    /**
+     * Removes every cached token signed with the given key, e.g. after the key has been revoked.
+     *
+     * @param keyId the ID of the key.
+     */
+    public void invalidate(String keyId) {
+        lock.lock();
+        try {
+            entries.keySet().removeIf(cacheKey -> cacheKey.keyId.equals(keyId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the cached token of the given key and user claims, e.g. after it has been rejected,
+     * so that the next call signs a new one.
+     *
+     * @param factory   the factory signing the token. Must not be null.
+     * @param userId    the unique identifier of the user, or null if the token has no such claim.
+     * @param userEmail the email of the user, or null if the token has no such claim.
+     */
+    public void invalidate(TokenFactory factory, String userId, String userEmail) {
+        Objects.requireNonNull(factory, "factory cannot be null");
+        CacheKey cacheKey = new CacheKey(factory.getSigningKey().getKeyId(), userId, userEmail);
+        lock.lock();
+        try {
+            entries.remove(cacheKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every cached token.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of cached entries.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry entry(CacheKey cacheKey) {
+        lock.lock();
+        try {
+            return entries.computeIfAbsent(cacheKey, k -> new Entry());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Value
+    private static class CacheKey {
+        String keyId;
+        String userId;
+        String userEmail;
+    }
+
+    /**
+     * A signed token with the instants at which it must be refreshed and at which it expires.
+     */
+    private static final class Token {
+        final String value;
+        final Instant refreshAt;
+        final Instant expiresAt;
+
+        Token(String value, Instant refreshAt, Instant expiresAt) {
+            this.value = value;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Entry {
+        volatile Token token;
+        final AtomicReference<CompletableFuture<Token>> pending = new AtomicReference<>();
+
+        /**
+         * Signs a new token on the given executor, unless a signature is already in progress
+         * for this entry, in which case the pending signature is returned.
+         */
+        CompletableFuture<Token> refresh(TokenFactory factory, String userId, String userEmail, Executor on) {
+            CompletableFuture<Token> future = new CompletableFuture<>();
+            CompletableFuture<Token> current = pending.compareAndExchange(null, future);
+            if (current != null) {
+                return current;
+            }
+            try {
+                on.execute(() -> sign(factory, userId, userEmail, future));
+            } catch (RuntimeException e) {
+                pending.set(null);
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        private void sign(TokenFactory factory, String userId, String userEmail, CompletableFuture<Token> future) {
+            try {
+                Instant now = clock.instant();
+                // JWT expiration times are whole seconds
+                Instant expiresAt = now.plus(lifetime).truncatedTo(ChronoUnit.SECONDS);
+                String value = factory.sign(userId, userEmail, expiresAt);
+                Token signed = new Token(value, expiresAt.minus(refreshAhead), expiresAt);
+                token = signed;
+                pending.set(null);
+                future.complete(signed);
+            } catch (Throwable e) {
+                pending.set(null);
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Builder of {@link TokenCache} instances.
+     */
+    public static final class Builder {
+        private int maximumSize = 10_000;
+        private Duration lifetime = Duration.ofHours(1);
+        private Duration refreshAhead = Duration.ofMinutes(5);
+        private Executor executor = SigningPool.shared();
+        private Clock clock = Clock.systemUTC();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of cached tokens, beyond which the least recently used one is evicted.
+         *
+         * @param maximumSize the maximum number of cached tokens. Must be positive.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code maximumSize} is not positive.
+         */
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize <= 0) {
+                throw new RuntimeException("maximumSize must be positive");
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the validity of the signed tokens.
+         *
+         * @param lifetime the validity of the signed tokens. Must be positive and at most 1 day.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code lifetime} is null.
+         * @throws RuntimeException     if {@code lifetime} is out of range.
+         */
+        public Builder lifetime(Duration lifetime) {
+            Objects.requireNonNull(lifetime, "lifetime cannot be null");
+            if (lifetime.isNegative() || lifetime.isZero()) {
+                throw new RuntimeException("lifetime must be positive");
+            }
+            if (lifetime.getSeconds() > TokenFactory.MAX_VALIDITY_SECONDS) {
+                throw new RuntimeException("lifetime cannot be more than 1 day");
+            }
+            this.lifetime = lifetime;
+            return this;
+        }
+
+        /**
+         * Sets how long before its expiration a token is signed again in the background.
+         *
+         * @param refreshAhead the refresh-ahead window. Must not be negative.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code refreshAhead} is null.
+         * @throws RuntimeException     if {@code refreshAhead} is negative.
+         */
+        public Builder refreshAhead(Duration refreshAhead) {
+            Objects.requireNonNull(refreshAhead, "refreshAhead cannot be null");
+            if (refreshAhead.isNegative()) {
+                throw new RuntimeException("refreshAhead cannot be negative");
+            }
+            this.refreshAhead = refreshAhead;
+            return this;
+        }
+
+        /**
+         * Sets the executor running the background refreshes and the signatures of {@link #getAsync(TokenFactory,
+         * String, String)}, by default a pool with one thread per processor shared with {@link AsyncTokenSigner}.
+         *
+         * @param executor the executor running the signatures. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code executor} is null.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the clock giving the current time, which should be the clock of the factories signing the tokens.
+         *
+         * @param clock the clock, e.g. a fixed clock in tests or a {@link CoarseClock}. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code clock} is null.
+         */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock cannot be null");
+            return this;
+        }
+
+        /**
+         * Builds the cache.
+         *
+         * @return a new, empty cache.
+         * @throws RuntimeException if the refresh-ahead window is not shorter than the lifetime.
+         */
+        public TokenCache build() {
+            if (refreshAhead.compareTo(lifetime) >= 0) {
+                throw new RuntimeException("refreshAhead must be shorter than lifetime");
+            }
+            return new TokenCache(this);
+        }
+    }
+}
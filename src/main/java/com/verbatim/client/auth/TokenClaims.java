@@ -0,0 +1,64 @@
+package com.verbatim.client.auth;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The TokenClaims class holds the optional user claims of a token: the user ID ({@code uid})
+ * and the user email ({@code email}). Either can be null, in which case the claim is omitted.
+ * <p>
+ * Instances are immutable and can be used as map keys.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class TokenClaims {
+
+    private static final TokenClaims NONE = new TokenClaims(null, null);
+
+    /**
+     * The unique identifier of the user, or null
+     */
+    private final String userId;
+
+    /**
+     * The email of the user, or null
+     */
+    private final String userEmail;
+
+    private TokenClaims(String userId, String userEmail) {
+        this.userId = userId;
+        this.userEmail = userEmail;
+    }
+
+    /**
+     * Returns the claims of a token without user claims.
+     *
+     * @return the empty claims.
+     */
+    public static TokenClaims none() {
+        return NONE;
+    }
+
+    /**
+     * Creates the claims of a token issued for a user.
+     *
+     * @param userId    the unique identifier of the user, or null to omit the claim. Must not be blank.
+     * @param userEmail the email of the user, or null to omit the claim. Must not be blank.
+     * @return the claims.
+     * @throws RuntimeException if {@code userId} or {@code userEmail} is blank.
+     */
+    public static TokenClaims of(String userId, String userEmail) {
+        if (userId == null && userEmail == null) {
+            return NONE;
+        }
+        if (userId != null) {
+            TokenFactory.assertUserId(userId);
+        }
+        if (userEmail != null) {
+            TokenFactory.assertUserEmail(userEmail);
+        }
+        return new TokenClaims(userId, userEmail);
+    }
+}
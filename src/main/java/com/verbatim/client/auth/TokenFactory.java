@@ -0,0 +1,193 @@
+package com.verbatim.client.auth;
+
+import lombok.Getter;
+
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The TokenFactory class signs JWT tokens for a single {@link Key}.
+ * <p>
+ * Unlike {@link TokenBuilder}, a TokenFactory is immutable and thread-safe: create it once
+ * per key and share it between all your request threads. The key is parsed once, when the
+ * factory is created, so each call to {@link #sign(String, String, Instant)} only serializes
+ * the claims, with the header pre-encoded once per key, and computes the signature.
+ * <p>
+ * Tokens are issued by {@code verbatim_client}, their subject is the organization ID of the
+ * key and their {@code kid} header is the key ID. The user ID and user email claims are optional.
+ * <p>
+ * The issue time of the tokens, and the current time their expiration is checked against, are read
+ * from the clock of the factory: the system clock by default, or any {@link Clock}, such as a fixed
+ * clock in tests or a {@link CoarseClock}, see {@link #TokenFactory(SigningKey, Clock)}.
+ */
+public final class TokenFactory {
+
+    static final String ISSUER = "verbatim_client";
+    static final String CLAIMS_USER_ID = "uid";
+    static final String CLAIMS_USER_EMAIL = "email";
+    static final String CLAIMS_JWT_ID = "jti";
+    static final long MAX_VALIDITY_SECONDS = 60 * 60 * 24;
+
+    /**
+     * The parsed key used to sign every token of this factory
+     */
+    @Getter
+    private final SigningKey signingKey;
+
+    /**
+     * The clock giving the issue time of the tokens
+     */
+    @Getter
+    private final Clock clock;
+
+    /**
+     * Creates a factory signing tokens with the given key.
+     *
+     * @param key the key used for signing the tokens. Must not be null.
+     * @throws NullPointerException if {@code key} is null.
+     * @throws TokenException       if the public or private key cannot be parsed.
+     */
+    public TokenFactory(Key key) throws TokenException {
+        this(Objects.requireNonNull(key, "key cannot be null").signingKey());
+    }
+
+    /**
+     * Creates a factory signing tokens with the given signer, e.g. a {@link JcaSigner} reading its
+     * private key from a key store.
+     *
+     * @param signer the signer of the tokens. Must not be null.
+     * @throws NullPointerException if {@code signer} is null.
+     * @throws RuntimeException     if the key ID or the organization ID of the signer is not set.
+     */
+    public TokenFactory(Signer signer) {
+        this(SigningKey.of(signer));
+    }
+
+    /**
+     * Creates a factory signing tokens with the given parsed key.
+     *
+     * @param signingKey the parsed key used for signing the tokens. Must not be null.
+     * @throws NullPointerException if {@code signingKey} is null.
+     */
+    public TokenFactory(SigningKey signingKey) {
+        this(signingKey, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a factory signing tokens with the given parsed key, issued at the time of the given clock.
+     *
+     * @param signingKey the parsed key used for signing the tokens. Must not be null.
+     * @param clock      the clock giving the issue time of the tokens. Must not be null.
+     * @throws NullPointerException if {@code signingKey} or {@code clock} is null.
+     */
+    public TokenFactory(SigningKey signingKey, Clock clock) {
+        this.signingKey = Objects.requireNonNull(signingKey, "signingKey cannot be null");
+        this.clock = Objects.requireNonNull(clock, "clock cannot be null");
+    }
+
+    /**
+     * Signs a token without user claims.
+     *
+     * @param expiresAt the expiration time of the token. Must not be null, in the past or more than 1 day in the future.
+     * @return a signed JWT as a String.
+     * @throws TokenException if {@code expiresAt} is null or if the token cannot be signed.
+     */
+    public String sign(Instant expiresAt) throws TokenException {
+        return sign(null, null, expiresAt);
+    }
+
+    /**
+     * Signs a token with optional user ID and user email claims.
+     *
+     * @param userId    the unique identifier of the user, or null to omit the claim. Must not be blank.
+     * @param userEmail the email of the user, or null to omit the claim. Must not be blank.
+     * @param expiresAt the expiration time of the token. Must not be null, in the past or more than 1 day in the future.
+     * @return a signed JWT as a String.
+     * @throws TokenException   if {@code expiresAt} is null or if the token cannot be signed.
+     * @throws RuntimeException if a claim is blank or {@code expiresAt} is out of range.
+     */
+    public String sign(String userId, String userEmail, Instant expiresAt) throws TokenException {
+        return sign(userId, userEmail, null, expiresAt);
+    }
+
+    /**
+     * Signs a token with optional user ID, user email and JWT ID claims. A unique JWT ID per token,
+     * see {@link #newJwtId()}, lets the API reject replayed tokens.
+     *
+     * @param userId    the unique identifier of the user, or null to omit the claim. Must not be blank.
+     * @param userEmail the email of the user, or null to omit the claim. Must not be blank.
+     * @param jwtId     the JWT ID ({@code jti} claim), or null to omit the claim. Must not be blank.
+     * @param expiresAt the expiration time of the token. Must not be null, in the past or more than 1 day in the future.
+     * @return a signed JWT as a String.
+     * @throws TokenException   if {@code expiresAt} is null or if the token cannot be signed.
+     * @throws RuntimeException if a claim is blank or {@code expiresAt} is out of range.
+     */
+    public String sign(String userId, String userEmail, String jwtId, Instant expiresAt) throws TokenException {
+        if (expiresAt == null) {
+            throw new TokenException("ExpireAt not set");
+        }
+        Instant now = clock.instant();
+        assertExpiresAt(expiresAt, now);
+        if (userId != null) {
+            assertUserId(userId);
+        }
+        if (userEmail != null) {
+            assertUserEmail(userEmail);
+        }
+        if (jwtId != null) {
+            assertJwtId(jwtId);
+        }
+
+        TokenMetrics metrics = MetricsHolder.current;
+        long start = System.nanoTime();
+        String token;
+        try {
+            token = signingKey.getEncoder().encode(userId, userEmail, jwtId, now, expiresAt);
+        } catch (GeneralSecurityException e) {
+            metrics.failure(TokenMetrics.Failure.SIGN);
+            throw new TokenException(e);
+        }
+        metrics.tokenSigned(signingKey.getKeyId(), signingKey.getSigningAlgorithm(), System.nanoTime() - start);
+        return token;
+    }
+
+    /**
+     * Returns a new random JWT ID, a type 4 UUID.
+     *
+     * @return the JWT ID.
+     */
+    public static String newJwtId() {
+        return UUID.randomUUID().toString();
+    }
+
+    static void assertExpiresAt(Instant expiresAt, Instant now) {
+        if (expiresAt.isBefore(now)) {
+            throw new RuntimeException("expiresAt cannot be before now");
+        }
+
+        if (expiresAt.isAfter(now.plusSeconds(MAX_VALIDITY_SECONDS))) {
+            throw new RuntimeException("expiresAt cannot be more than 1 day in the future");
+        }
+    }
+
+    static void assertUserId(String userId) {
+        if (userId.isBlank()) {
+            throw new RuntimeException("userId cannot be empty");
+        }
+    }
+
+    static void assertUserEmail(String userEmail) {
+        if (userEmail.isBlank()) {
+            throw new RuntimeException("userEmail cannot be empty");
+        }
+    }
+
+    static void assertJwtId(String jwtId) {
+        if (jwtId.isBlank()) {
+            throw new RuntimeException("jwtId cannot be empty");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.verbatim.client.auth;
+
+import java.util.Objects;
+
+/**
+ * The TokenMetrics interface is the instrumentation hook of the library: key loading, key parsing,
+ * token signing, token caching, key reloads and failures are reported to the installed instance.
+ * <p>
+ * Nothing is recorded by default. Install an implementation with {@link #install(TokenMetrics)},
+ * either {@link SimpleTokenMetrics}, which exposes its figures through JMX and java.util.logging,
+ * or an adapter to your own metrics library. Every method has a no-op default, so an implementation
+ * only overrides what it needs.
+ * <p>
+ * Methods are called on the hot path, from any thread: implementations must be thread-safe, fast
+ * and should not allocate. Arguments are either primitives or existing objects.
+ */
+public interface TokenMetrics {
+
+    /**
+     * The metrics recording nothing, installed by default.
+     */
+    TokenMetrics NOOP = new TokenMetrics() {
+    };
+
+    /**
+     * The causes of the failures reported to {@link #failure(Failure)}.
+     */
+    enum Failure {
+        /**
+         * A key file could not be read or its content is invalid
+         */
+        KEY_LOAD,
+        /**
+         * The PEM encoded public or private key could not be parsed
+         */
+        KEY_PARSE,
+        /**
+         * A token could not be signed
+         */
+        SIGN,
+        /**
+         * A watched key file could not be reloaded
+         */
+        KEY_RELOAD,
+        /**
+         * A token was rejected by a {@link TokenVerifier}
+         */
+        VERIFY
+    }
+
+    /**
+     * Installs the metrics receiving the measurements of the library, replacing the previous ones.
+     *
+     * @param metrics the metrics. Must not be null; use {@link #NOOP} to stop recording.
+     */
+    static void install(TokenMetrics metrics) {
+        MetricsHolder.current = Objects.requireNonNull(metrics, "metrics cannot be null");
+    }
+
+    /**
+     * @return the installed metrics.
+     */
+    static TokenMetrics current() {
+        return MetricsHolder.current;
+    }
+
+    /**
+     * A key file has been loaded by a {@link KeyLoader}.
+     *
+     * @param nanos the loading time, in nanoseconds.
+     */
+    default void keyLoaded(long nanos) {
+    }
+
+    /**
+     * The PEM encoded keys of a {@link Key} have been parsed.
+     *
+     * @param keyId the ID of the key.
+     * @param nanos the parsing time, in nanoseconds.
+     */
+    default void keyParsed(String keyId, long nanos) {
+    }
+
+    /**
+     * The already parsed keys of a {@link Key} have been reused instead of parsing the PEM again.
+     *
+     * @param keyId the ID of the key.
+     */
+    default void keyParseCacheHit(String keyId) {
+    }
+
+    /**
+     * A token has been signed.
+     *
+     * @param keyId     the ID of the key.
+     * @param algorithm the signing algorithm.
+     * @param nanos     the signing time, in nanoseconds.
+     */
+    default void tokenSigned(String keyId, SigningAlgorithm algorithm, long nanos) {
+    }
+
+    /**
+     * A {@link TokenCache} has served a cached token.
+     */
+    default void tokenCacheHit() {
+    }
+
+    /**
+     * A {@link TokenCache} had no valid token and the caller waited for a signature.
+     */
+    default void tokenCacheMiss() {
+    }
+
+    /**
+     * A {@link TokenPool} has served a pre-signed token.
+     */
+    default void tokenPoolHit() {
+    }
+
+    /**
+     * A {@link TokenPool} was empty and the caller waited for a signature.
+     */
+    default void tokenPoolMiss() {
+    }
+
+    /**
+     * The number of pre-signed tokens held by a {@link TokenPool} has changed.
+     *
+     * @param pool  the name of the pool.
+     * @param depth the number of tokens held by the pool.
+     */
+    default void tokenPoolDepth(String pool, int depth) {
+    }
+
+    /**
+     * A {@link TokenPool} has been closed, its depth is no longer reported.
+     *
+     * @param pool the name of the pool.
+     */
+    default void tokenPoolClosed(String pool) {
+    }
+
+    /**
+     * A {@link SigningLimiter} has let a signature through.
+     *
+     * @param waitNanos the time waited for a signing slot, in nanoseconds.
+     */
+    default void signingAdmitted(long waitNanos) {
+    }
+
+    /**
+     * A {@link SigningLimiter} has shed a signature.
+     */
+    default void signingRejected() {
+    }
+
+    /**
+     * A {@link SigningLimiter} has served a token signed earlier instead of signing a new one.
+     */
+    default void signingStale() {
+    }
+
+    /**
+     * The number of callers waiting in a {@link SigningLimiter} has changed.
+     *
+     * @param limiter the name of the limiter.
+     * @param depth   the number of waiting callers.
+     */
+    default void signingQueueDepth(String limiter, int depth) {
+    }
+
+    /**
+     * A watched key file has been reloaded.
+     *
+     * @param keyId the ID of the reloaded key.
+     */
+    default void keyReloaded(String keyId) {
+    }
+
+    /**
+     * An operation has failed.
+     *
+     * @param cause the cause of the failure.
+     */
+    default void failure(Failure cause) {
+    }
+}
@@ -0,0 +1,347 @@
+package com.verbatim.client.auth;
+
+import lombok.extern.java.Log;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * The TokenPool class holds tokens signed ahead of time for one factory and one set of claims, so
+ * that callers needing a new token for each request get one without waiting for a signature.
+ * <p>
+ * Every token of the pool carries its own random JWT ID ({@code jti}), so each one is meant to be
+ * used once, unlike the tokens of a {@link TokenCache}. A background thread signs tokens until the
+ * pool holds {@code targetSize} of them, and discards those with less than {@code minRemaining} left
+ * before they expire. {@link #take()} only signs inline when the pool is empty; hits, misses and the
+ * depth of the pool are reported to {@link TokenMetrics}.
+ * <p>
+ * The filling is not aware of the load of the machine: the thread has a minimal priority, which most
+ * JVMs ignore, e.g. HotSpot on Linux. To leave room to the request threads after a burst has drained
+ * the pool, it rests after each signature as long as the signature took, so that it never uses more
+ * than half of a processor.
+ * <p>
+ * Expirations are computed with the clock of the factory. Instances are thread-safe; close the pool
+ * to stop its thread.
+ * <pre>
+ * try (TokenPool pool = TokenPool.builder(factory).claims(TokenClaims.of("userId", null)).build()) {
+ *     String token = pool.take();
+ * }
+ * </pre>
+ */
+@Log
+public final class TokenPool implements Closeable {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    /**
+     * Longest wait of the filler thread between two checks of the pool
+     */
+    static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Wait of the filler thread after a failed signature
+     */
+    static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final TokenFactory factory;
+    private final TokenClaims claims;
+    private final int targetSize;
+    private final Duration lifetime;
+    private final Duration minRemaining;
+    private final String name;
+    private final Clock clock;
+
+    /**
+     * The pre-signed tokens, the first to expire first
+     */
+    private final ConcurrentLinkedDeque<Token> tokens = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wanted = lock.newCondition();
+    private final Thread filler;
+    private volatile boolean closed = false;
+
+    private TokenPool(Builder builder) {
+        this.factory = builder.factory;
+        this.claims = builder.claims;
+        this.targetSize = builder.targetSize;
+        this.lifetime = builder.lifetime;
+        this.minRemaining = builder.minRemaining;
+        int id = THREADS.incrementAndGet();
+        // pools of the same key for other claims must not share a depth gauge
+        this.name = builder.name != null ? builder.name : factory.getSigningKey().getKeyId() + "#" + id;
+        this.clock = factory.getClock();
+
+        filler = new Thread(this::run, "verbatim-token-pool-" + id);
+        filler.setDaemon(true);
+        filler.setPriority(Thread.MIN_PRIORITY);
+        filler.start();
+    }
+
+    /**
+     * Creates a builder of a pool of tokens signed by the given factory, initialized with the default
+     * settings: 64 tokens without user claims, valid for 1 hour and discarded 5 minutes before they expire.
+     *
+     * @param factory the factory signing the tokens. Must not be null.
+     * @return a new builder.
+     */
+    public static Builder builder(TokenFactory factory) {
+        return new Builder(factory);
+    }
+
+    /**
+     * Returns a token that has not been returned before, signed ahead of time if the pool is not empty,
+     * signed by the calling thread otherwise.
+     *
+     * @return a signed JWT as a String, valid for at least {@code minRemaining}.
+     * @throws TokenException if the pool is empty and the signature fails.
+     */
+    public String take() throws TokenException {
+        Instant limit = clock.instant().plus(minRemaining);
+        Token token;
+        while ((token = tokens.pollFirst()) != null) {
+            int depth = size.decrementAndGet();
+            if (token.expiresAt.isAfter(limit)) {
+                if (depth <= targetSize / 2) {
+                    signalFiller();
+                }
+                MetricsHolder.current.tokenPoolHit();
+                return token.value;
+            }
+        }
+        MetricsHolder.current.tokenPoolMiss();
+        signalFiller();
+        return sign().value;
+    }
+
+    /**
+     * @return the number of pre-signed tokens currently held.
+     */
+    public int depth() {
+        return Math.max(size.get(), 0);
+    }
+
+    /**
+     * @return the name of the pool, under which its depth is reported to {@link TokenMetrics}.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Stops the filler thread and drops the pre-signed tokens. Tokens taken afterwards are signed inline.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        filler.interrupt();
+        while (tokens.pollFirst() != null) {
+            size.decrementAndGet();
+        }
+        MetricsHolder.current.tokenPoolDepth(name, 0);
+        MetricsHolder.current.tokenPoolClosed(name);
+    }
+
+    private Token sign() throws TokenException {
+        Instant expiresAt = clock.instant().plus(lifetime).truncatedTo(ChronoUnit.SECONDS);
+        String value = factory.sign(claims.getUserId(), claims.getUserEmail(), TokenFactory.newJwtId(), expiresAt);
+        return new Token(value, expiresAt);
+    }
+
+    private void signalFiller() {
+        if (lock.tryLock()) {
+            try {
+                wanted.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            long wait = IDLE_NANOS;
+            try {
+                purge();
+                while (!closed && size.get() < targetSize) {
+                    long start = System.nanoTime();
+                    Token token = sign();
+                    tokens.offerLast(token);
+                    size.incrementAndGet();
+                    // paced: as long at rest as at work
+                    TimeUnit.NANOSECONDS.sleep(System.nanoTime() - start);
+                }
+            } catch (TokenException | RuntimeException e) {
+                log.log(Level.WARNING, "Unable to sign the tokens of pool " + name, e);
+                wait = RETRY_NANOS;
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (closed) {
+                return;
+            }
+            MetricsHolder.current.tokenPoolDepth(name, depth());
+            if (closed) {
+                // closed while publishing the depth, which may have come after the removal by close()
+                MetricsHolder.current.tokenPoolClosed(name);
+                return;
+            }
+            lock.lock();
+            try {
+                wanted.awaitNanos(wait);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Discards the tokens about to expire, from the head of the pool.
+     */
+    private void purge() {
+        Instant limit = clock.instant().plus(minRemaining);
+        Token head;
+        while ((head = tokens.pollFirst()) != null) {
+            if (head.expiresAt.isAfter(limit)) {
+                // a concurrent take() may have polled an older token meanwhile: the order is kept all the same
+                tokens.offerFirst(head);
+                return;
+            }
+            size.decrementAndGet();
+        }
+    }
+
+    private static final class Token {
+        final String value;
+        final Instant expiresAt;
+
+        Token(String value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Builder of {@link TokenPool} instances.
+     */
+    public static final class Builder {
+        private final TokenFactory factory;
+        private TokenClaims claims = TokenClaims.none();
+        private int targetSize = 64;
+        private Duration lifetime = Duration.ofHours(1);
+        private Duration minRemaining = Duration.ofMinutes(5);
+        private String name;
+
+        private Builder(TokenFactory factory) {
+            this.factory = Objects.requireNonNull(factory, "factory cannot be null");
+        }
+
+        /**
+         * Sets the user claims of the tokens, see {@link TokenClaims#of(String, String)}.
+         *
+         * @param claims the user claims. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code claims} is null.
+         */
+        public Builder claims(TokenClaims claims) {
+            this.claims = Objects.requireNonNull(claims, "claims cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the number of tokens the pool is filled up to.
+         *
+         * @param targetSize the number of tokens. Must be positive.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code targetSize} is not positive.
+         */
+        public Builder targetSize(int targetSize) {
+            if (targetSize <= 0) {
+                throw new RuntimeException("targetSize must be positive");
+            }
+            this.targetSize = targetSize;
+            return this;
+        }
+
+        /**
+         * Sets the validity of the signed tokens, from the time they are signed.
+         *
+         * @param lifetime the validity of the signed tokens. Must be positive and at most 1 day.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code lifetime} is null.
+         * @throws RuntimeException     if {@code lifetime} is out of range.
+         */
+        public Builder lifetime(Duration lifetime) {
+            Objects.requireNonNull(lifetime, "lifetime cannot be null");
+            if (lifetime.isNegative() || lifetime.isZero()) {
+                throw new RuntimeException("lifetime must be positive");
+            }
+            if (lifetime.getSeconds() > TokenFactory.MAX_VALIDITY_SECONDS) {
+                throw new RuntimeException("lifetime cannot be more than 1 day");
+            }
+            this.lifetime = lifetime;
+            return this;
+        }
+
+        /**
+         * Sets the minimal validity left of the tokens returned by the pool; tokens closer to their
+         * expiration are discarded.
+         *
+         * @param minRemaining the minimal validity left. Must not be negative.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code minRemaining} is null.
+         * @throws RuntimeException     if {@code minRemaining} is negative.
+         */
+        public Builder minRemaining(Duration minRemaining) {
+            Objects.requireNonNull(minRemaining, "minRemaining cannot be null");
+            if (minRemaining.isNegative()) {
+                throw new RuntimeException("minRemaining cannot be negative");
+            }
+            this.minRemaining = minRemaining;
+            return this;
+        }
+
+        /**
+         * Sets the name under which the depth of the pool is reported, by default the key ID followed by a
+         * number unique to the pool, e.g. {@code MY_KEY_ID#1}.
+         *
+         * @param name the name of the pool. Must not be null or blank.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code name} is null.
+         * @throws RuntimeException     if {@code name} is blank.
+         */
+        public Builder name(String name) {
+            Objects.requireNonNull(name, "name cannot be null");
+            if (name.isBlank()) {
+                throw new RuntimeException("name cannot be empty");
+            }
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Builds the pool and starts filling it in the background.
+         *
+         * @return a new pool.
+         * @throws RuntimeException if {@code minRemaining} is not shorter than the lifetime.
+         */
+        public TokenPool build() {
+            if (minRemaining.compareTo(lifetime) >= 0) {
+                throw new RuntimeException("minRemaining must be shorter than lifetime");
+            }
+            return new TokenPool(this);
+        }
+    }
+}
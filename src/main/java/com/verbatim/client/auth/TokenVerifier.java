@@ -0,0 +1,340 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The TokenVerifier class verifies Verbatim tokens, e.g. at a gateway accepting them.
+ * <p>
+ * The public key is picked from the {@code kid} header of the token, among the keys given to the
+ * builder and, if set, the keys of a {@link KeyRing}. Only the public part of the keys is used. A
+ * {@link JWTVerifier} is built once per key ID and reused; for a key of the key ring, it is dropped
+ * as soon as the key is removed from the key ring or replaced. Tokens must be issued by
+ * {@code verbatim_client} and carry {@code exp} and {@code iat} claims, both checked with a
+ * configurable clock skew.
+ * <p>
+ * The SHA-256 hashes of verified tokens are cached until the tokens expire, so a token presented
+ * again is only decoded, not verified again. The cache is bounded; the least recently used hash
+ * is evicted first. Instances are thread-safe.
+ */
+public final class TokenVerifier {
+
+    private final Map<String, PublicKeyEntry> publicKeys;
+    private final KeyRing keyRing;
+    private final long leeway;
+    private final int maximumCacheSize;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, VerifierEntry> verifiers = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<ByteBuffer, Long> verified;
+
+    private TokenVerifier(Builder builder) {
+        this.publicKeys = new HashMap<>(builder.publicKeys);
+        this.keyRing = builder.keyRing;
+        this.leeway = builder.leeway.getSeconds();
+        this.maximumCacheSize = builder.maximumCacheSize;
+        this.clock = builder.clock;
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Long> eldest) {
+                return size() > maximumCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Creates a builder for a new verifier, accepting a clock skew of 30 seconds and caching up to 10 000 verified tokens.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Verifies a token: signature, issuer, expiration and issue times.
+     *
+     * @param token the token. Must not be null.
+     * @return the decoded token.
+     * @throws TokenException if the token is malformed, signed with an unknown key, badly signed or expired.
+     */
+    public DecodedJWT verify(String token) throws TokenException {
+        Objects.requireNonNull(token, "token cannot be null");
+        DecodedJWT jwt;
+        try {
+            jwt = JWT.decode(token);
+        } catch (JWTVerificationException e) {
+            throw failure(new TokenException(e));
+        }
+
+        String keyId = jwt.getKeyId();
+        if (keyId == null) {
+            throw failure(new TokenException("Token without key ID"));
+        }
+        // looked up first, so that the verifications cached for a removed key are dropped
+        JWTVerifier verifier = verifier(keyId);
+
+        ByteBuffer hash = maximumCacheSize > 0 ? hash(token) : null;
+        if (hash != null && isVerified(hash, clock.instant())) {
+            return jwt;
+        }
+        try {
+            verifier.verify(jwt);
+        } catch (JWTVerificationException e) {
+            throw failure(new TokenException(e));
+        }
+
+        if (hash != null) {
+            lock.lock();
+            try {
+                verified.put(hash, jwt.getExpiresAtAsInstant().getEpochSecond());
+            } finally {
+                lock.unlock();
+            }
+        }
+        return jwt;
+    }
+
+    /**
+     * Drops the verifier of a key and all cached verifications, e.g. after a key has been revoked.
+     *
+     * @param keyId the ID of the key.
+     */
+    public void invalidate(String keyId) {
+        verifiers.remove(keyId);
+        clearVerified();
+    }
+
+    private void clearVerified() {
+        lock.lock();
+        try {
+            verified.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isVerified(ByteBuffer hash, Instant now) {
+        lock.lock();
+        try {
+            Long expiresAt = verified.get(hash);
+            if (expiresAt == null) {
+                return false;
+            }
+            if (now.getEpochSecond() >= expiresAt) {
+                verified.remove(hash);
+                return false;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private JWTVerifier verifier(String keyId) throws TokenException {
+        VerifierEntry cached = verifiers.get(keyId);
+        if (cached != null) {
+            if (cached.factory == null || keyRing.getByKeyId(keyId) == cached.factory) {
+                return cached.verifier;
+            }
+            // the key has been removed from the key ring, or replaced
+            if (verifiers.remove(keyId, cached)) {
+                clearVerified();
+            }
+        }
+
+        PublicKeyEntry entry = publicKeys.get(keyId);
+        TokenFactory factory = null;
+        if (entry == null && keyRing != null) {
+            factory = keyRing.getByKeyId(keyId);
+            if (factory != null && factory.getSigningKey().getPublicKey() != null) {
+                SigningKey signingKey = factory.getSigningKey();
+                entry = new PublicKeyEntry(signingKey.getPublicKey(), signingKey.getSigningAlgorithm());
+            }
+        }
+        if (entry == null) {
+            throw failure(new TokenException("Unknown key ID " + keyId));
+        }
+
+        JWTVerifier verifier = ((JWTVerifier.BaseVerification) JWT.require(entry.algorithm.verifier(entry.publicKey))
+                .withIssuer(TokenFactory.ISSUER)
+                .withClaimPresence("exp")
+                .withClaimPresence("iat")
+                .acceptLeeway(leeway))
+                .build(clock);
+        VerifierEntry existing = verifiers.putIfAbsent(keyId, new VerifierEntry(verifier, factory));
+        return existing != null && existing.factory == factory ? existing.verifier : verifier;
+    }
+
+    private static TokenException failure(TokenException e) {
+        MetricsHolder.current.failure(TokenMetrics.Failure.VERIFY);
+        return e;
+    }
+
+    private static ByteBuffer hash(String token) throws TokenException {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new TokenException(e);
+        }
+    }
+
+    /**
+     * A parsed public key and the algorithm of the tokens it verifies.
+     */
+    private static final class PublicKeyEntry {
+        final PublicKey publicKey;
+        final SigningAlgorithm algorithm;
+
+        PublicKeyEntry(PublicKey publicKey, SigningAlgorithm algorithm) {
+            this.publicKey = publicKey;
+            this.algorithm = algorithm;
+        }
+    }
+
+    /**
+     * A verifier and, for a key of the key ring, the factory it was built from.
+     */
+    private static final class VerifierEntry {
+        final JWTVerifier verifier;
+        final TokenFactory factory;
+
+        VerifierEntry(JWTVerifier verifier, TokenFactory factory) {
+            this.verifier = verifier;
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * Builder of {@link TokenVerifier} instances.
+     */
+    public static final class Builder {
+        private final Map<String, PublicKeyEntry> publicKeys = new HashMap<>();
+        private KeyRing keyRing;
+        private Duration leeway = Duration.ofSeconds(30);
+        private int maximumCacheSize = 10_000;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder() {
+        }
+
+        /**
+         * Accepts the tokens signed with the given key. Only its public part is used.
+         *
+         * @param key the key. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws TokenException if the public key cannot be parsed or does not match the algorithm of the key.
+         */
+        public Builder key(Key key) throws TokenException {
+            Objects.requireNonNull(key, "key cannot be null");
+            PublicKey publicKey = PemDecoder.readPublicKey(key.getPublicKey());
+            SigningAlgorithm algorithm = key.getAlgorithm() == null
+                    ? SigningAlgorithm.of(publicKey)
+                    : SigningAlgorithm.of(key.getAlgorithm());
+            algorithm.verifier(publicKey);
+            publicKeys.put(key.getKeyId(), new PublicKeyEntry(publicKey, algorithm));
+            return this;
+        }
+
+        /**
+         * Accepts the tokens signed with the private part of the given public key.
+         *
+         * @param keyId     the ID of the key. Must not be null.
+         * @param publicKey the PEM encoded public key. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws TokenException if the public key cannot be parsed.
+         */
+        public Builder publicKey(String keyId, String publicKey) throws TokenException {
+            Objects.requireNonNull(keyId, "keyId cannot be null");
+            PublicKey parsed = PemDecoder.readPublicKey(publicKey);
+            publicKeys.put(keyId, new PublicKeyEntry(parsed, SigningAlgorithm.of(parsed)));
+            return this;
+        }
+
+        /**
+         * Accepts the tokens signed with any key of the given key ring, looked up when a key ID is first seen.
+         * The key ring is checked again on each verification: the tokens of a key removed from the key ring
+         * are rejected from then on, and those of a key replaced with the same ID are verified with the new key.
+         *
+         * @param keyRing the key ring. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         */
+        public Builder keyRing(KeyRing keyRing) {
+            this.keyRing = Objects.requireNonNull(keyRing, "keyRing cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the accepted clock skew when checking the expiration and issue times.
+         *
+         * @param leeway the accepted clock skew. Must not be negative.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code leeway} is negative.
+         */
+        public Builder leeway(Duration leeway) {
+            Objects.requireNonNull(leeway, "leeway cannot be null");
+            if (leeway.isNegative()) {
+                throw new RuntimeException("leeway cannot be negative");
+            }
+            this.leeway = leeway;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of verified tokens remembered; 0 disables the cache.
+         *
+         * @param maximumCacheSize the maximum number of verified tokens remembered. Must not be negative.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws RuntimeException if {@code maximumCacheSize} is negative.
+         */
+        public Builder maximumCacheSize(int maximumCacheSize) {
+            if (maximumCacheSize < 0) {
+                throw new RuntimeException("maximumCacheSize cannot be negative");
+            }
+            this.maximumCacheSize = maximumCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the clock the expiration and issue times are checked against, the system clock by default.
+         *
+         * @param clock the clock, e.g. a fixed clock in tests. Must not be null.
+         * @return the current instance of {@code Builder} to allow method chaining.
+         * @throws NullPointerException if {@code clock} is null.
+         */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock cannot be null");
+            return this;
+        }
+
+        /**
+         * Builds the verifier.
+         *
+         * @return a new verifier.
+         * @throws RuntimeException if no key has been given.
+         */
+        public TokenVerifier build() {
+            if (publicKeys.isEmpty() && keyRing == null) {
+                throw new RuntimeException("No key to verify tokens with");
+            }
+            return new TokenVerifier(this);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The WarmUp class checks a key and warms up its signing path, to be run at start-up before the
+ * application takes traffic.
+ * <p>
+ * {@link Key#assertContent()} only checks the PEM strings superficially: a corrupt key, or a public
+ * key that does not belong to the private key, would only show on the first token signed, or worse
+ * on the first token rejected by the API. The first signature also pays the initialization of the
+ * security providers and the loading and compilation of the signing code. A warm-up parses both
+ * keys, signs a token and verifies it with the public key, then signs {@code signatures} more tokens,
+ * and reports the time each step took.
+ * <pre>
+ * Key key = new KeyLoader().warmUp(WarmUp.DEFAULT_SIGNATURES).from(path).get();
+ * </pre>
+ * Warm-up signatures are not reported to {@link TokenMetrics}.
+ */
+@Log
+public final class WarmUp {
+
+    /**
+     * Default number of signatures of a warm-up, after the first one
+     */
+    public static final int DEFAULT_SIGNATURES = 100;
+
+    private static final String USER_ID = "warm-up";
+
+    private WarmUp() {
+    }
+
+    /**
+     * Parses the keys of a key, if not done yet, then checks and warms up its signing path.
+     *
+     * @param key        the key. Must not be null.
+     * @param signatures the number of signatures after the first one. Must not be negative.
+     * @return the timings of the warm-up.
+     * @throws TokenException   if a key cannot be parsed, if a token cannot be signed, or if the public key
+     *                          does not verify the tokens signed with the private key.
+     * @throws RuntimeException if {@code signatures} is negative.
+     */
+    public static Report run(Key key, int signatures) throws TokenException {
+        Objects.requireNonNull(key, "key cannot be null");
+        long start = System.nanoTime();
+        SigningKey signingKey = key.signingKey();
+        return run(signingKey, signatures, System.nanoTime() - start);
+    }
+
+    /**
+     * Checks and warms up the signing path of a parsed key. The match of the key pair is only checked
+     * when the public key is known, see {@link SigningKey#of(Signer)}.
+     *
+     * @param signingKey the parsed key. Must not be null.
+     * @param signatures the number of signatures after the first one. Must not be negative.
+     * @return the timings of the warm-up.
+     * @throws TokenException   if a token cannot be signed, or if the public key does not verify the tokens
+     *                          signed with the private key.
+     * @throws RuntimeException if {@code signatures} is negative.
+     */
+    public static Report run(SigningKey signingKey, int signatures) throws TokenException {
+        Objects.requireNonNull(signingKey, "signingKey cannot be null");
+        return run(signingKey, signatures, -1);
+    }
+
+    private static Report run(SigningKey signingKey, int signatures, long parseNanos) throws TokenException {
+        if (signatures < 0) {
+            throw new RuntimeException("signatures cannot be negative");
+        }
+        JwtEncoder encoder = signingKey.getEncoder();
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusSeconds(60);
+
+        long start = System.nanoTime();
+        String token = sign(signingKey, encoder, now, expiresAt);
+        long firstSignNanos = System.nanoTime() - start;
+
+        long verifyNanos = -1;
+        if (signingKey.getPublicKey() != null) {
+            start = System.nanoTime();
+            try {
+                signingKey.getSigningAlgorithm().verifier(signingKey.getPublicKey()).verify(JWT.decode(token));
+            } catch (JWTVerificationException e) {
+                MetricsHolder.current.failure(TokenMetrics.Failure.KEY_PARSE);
+                throw new TokenException("The public key of " + signingKey.getKeyId() + " does not match its private key", e);
+            }
+            verifyNanos = System.nanoTime() - start;
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < signatures; i++) {
+            sign(signingKey, encoder, now, expiresAt);
+        }
+        long signNanos = System.nanoTime() - start;
+
+        Report report = new Report(signingKey.getKeyId(), signingKey.getSigningAlgorithm(), parseNanos, firstSignNanos,
+                verifyNanos, signatures, signatures == 0 ? -1 : signNanos / signatures);
+        log.info(report.toString());
+        return report;
+    }
+
+    private static String sign(SigningKey signingKey, JwtEncoder encoder, Instant now, Instant expiresAt) throws TokenException {
+        try {
+            return encoder.encode(USER_ID, null, now, expiresAt);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new TokenException("Unable to sign with key " + signingKey.getKeyId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The timings of a warm-up, in nanoseconds; -1 when the step did not run.
+     */
+    @Getter
+    public static final class Report {
+
+        /**
+         * ID of the warmed up key
+         */
+        private final String keyId;
+
+        /**
+         * Algorithm of the key
+         */
+        private final SigningAlgorithm algorithm;
+
+        /**
+         * Time to parse the keys, or -1 when an already parsed {@link SigningKey} was warmed up
+         */
+        private final long parseNanos;
+
+        /**
+         * Time of the first signature
+         */
+        private final long firstSignNanos;
+
+        /**
+         * Time to verify the first token with the public key, or -1 if the public key is unknown
+         */
+        private final long verifyNanos;
+
+        /**
+         * Number of signatures after the first one
+         */
+        private final int signatures;
+
+        /**
+         * Mean time of the signatures after the first one, or -1 if there was none
+         */
+        private final long meanSignNanos;
+
+        Report(String keyId, SigningAlgorithm algorithm, long parseNanos, long firstSignNanos, long verifyNanos,
+               int signatures, long meanSignNanos) {
+            this.keyId = keyId;
+            this.algorithm = algorithm;
+            this.parseNanos = parseNanos;
+            this.firstSignNanos = firstSignNanos;
+            this.verifyNanos = verifyNanos;
+            this.signatures = signatures;
+            this.meanSignNanos = meanSignNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("Warm-up of key ").append(keyId).append(" (").append(algorithm).append("):");
+            if (parseNanos >= 0) {
+                builder.append(" parsed in ").append(millis(parseNanos)).append(',');
+            }
+            builder.append(" first signature in ").append(millis(firstSignNanos));
+            if (verifyNanos >= 0) {
+                builder.append(", verified in ").append(millis(verifyNanos));
+            }
+            if (signatures > 0) {
+                builder.append(", ").append(signatures).append(" signatures in ").append(millis(meanSignNanos)).append(" each");
+            }
+            return builder.toString();
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.ROOT, "%.3f ms", nanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.verbatim.client.auth;
+
+import lombok.extern.java.Log;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * The daemon and client modes of {@link Main}, see {@link TokenDaemon}. Compiled for Java 16, like
+ * {@code TokenDaemon}, and only loaded by {@link Main} once the Java version has been checked.
+ */
+@Log
+final class DaemonMain {
+
+    private DaemonMain() {
+    }
+
+    static void daemon(String[] args) throws Exception {
+        if (args.length != 3) {
+            Main.usage();
+        }
+        TokenFactory factory;
+        try (Key key = new KeyLoader().secretHolder(true).warmUp(WarmUp.DEFAULT_SIGNATURES).from(Paths.get(args[2])).get()) {
+            factory = new TokenFactory(key.signingKey(), CoarseClock.systemUTC());
+        }
+        TokenCache cache = TokenCache.builder().clock(factory.getClock()).build();
+        TokenDaemon daemon = TokenDaemon.start(Paths.get(args[1]), factory, cache);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (Exception e) {
+                log.warning("Unable to close the token daemon: " + e.getMessage());
+            }
+        }));
+        log.info("Serving tokens of key " + factory.getSigningKey().getKeyId() + " on " + daemon.getSocket());
+        daemon.await();
+    }
+
+    static void client(String[] args) throws Exception {
+        if (args.length < 2 || args.length % 2 != 0) {
+            Main.usage();
+        }
+        Path socket = Paths.get(args[1]);
+        String userId = null;
+        String userEmail = null;
+        Duration ttl = null;
+        for (int i = 2; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--uid":
+                    userId = args[i + 1];
+                    break;
+                case "--email":
+                    userEmail = args[i + 1];
+                    break;
+                case "--ttl":
+                    ttl = Duration.ofSeconds(Long.parseLong(args[i + 1]));
+                    break;
+                default:
+                    Main.usage();
+            }
+        }
+        System.out.println(TokenDaemon.fetch(socket, userId, userEmail, ttl));
+    }
+}
@@ -0,0 +1,343 @@
+package com.verbatim.client.auth;
+
+import lombok.extern.java.Log;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * The TokenDaemon class serves tokens over a Unix domain socket, so that scripts get a token from a
+ * warm, long-running JVM instead of starting one per token. Requires Java 16+.
+ * <p>
+ * The key is parsed once and tokens are served from a {@link TokenCache}. The protocol is line based,
+ * in UTF-8; a connection may send any number of requests:
+ * <pre>
+ * TOKEN [uid=&lt;userId&gt;] [email=&lt;userEmail&gt;] [ttl=&lt;seconds&gt;]
+ * PING
+ * </pre>
+ * Values are URL encoded. Each request is answered by {@code OK <token>} (or {@code OK pong}), or by
+ * {@code ERR <message>}. Requests without {@code ttl} are served from the cache; requests with a
+ * {@code ttl} get a newly signed token expiring after that many seconds. For instance:
+ * <pre>
+ * printf 'TOKEN uid=42\n' | nc -U /run/verbatim/token.sock
+ * </pre>
+ * Request lines are limited to {@value #MAX_LINE_LENGTH} characters; a longer line is answered by
+ * {@code ERR} and closes the connection.
+ * <p>
+ * The socket is bound in a temporary directory only accessible to its owner, restricted to its owner
+ * as well, then moved in place, so that it is never reachable by other users. It is removed by
+ * {@link #close()}. An existing file at the path of the socket is only replaced if it is a socket.
+ */
+@Log
+public final class TokenDaemon implements Closeable {
+
+    static final String TOKEN = "TOKEN";
+    static final String PING = "PING";
+    static final String OK = "OK ";
+    static final String ERR = "ERR ";
+
+    /**
+     * Maximum length of a request line, in characters
+     */
+    static final int MAX_LINE_LENGTH = 4096;
+
+    private final Path socket;
+    private final TokenFactory factory;
+    private final TokenCache cache;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections;
+    private final Thread acceptor;
+
+    private TokenDaemon(Path socket, TokenFactory factory, TokenCache cache) throws IOException {
+        this.socket = socket;
+        this.factory = factory;
+        this.cache = cache;
+
+        this.server = bind(socket);
+
+        AtomicInteger count = new AtomicInteger();
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "verbatim-token-daemon-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::accept, "verbatim-token-daemon");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static ServerSocketChannel bind(Path socket) throws IOException {
+        deleteSocket(socket);
+        Path parent = socket.toAbsolutePath().getParent();
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        Path directory = null;
+        Path bound = socket;
+        try {
+            try {
+                directory = Files.createTempDirectory(parent, ".vt",
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+                bound = directory.resolve("s");
+            } catch (UnsupportedOperationException e) {
+                log.log(Level.FINE, "Unable to restrict the permissions of " + socket, e);
+            }
+            server.bind(UnixDomainSocketAddress.of(bound));
+            if (directory != null) {
+                Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+                Files.move(bound, socket, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return server;
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        } finally {
+            if (directory != null) {
+                Files.deleteIfExists(bound);
+                Files.deleteIfExists(directory);
+            }
+        }
+    }
+
+    /**
+     * Deletes the socket file at the given path, if any.
+     *
+     * @throws IOException if the file cannot be deleted, or if it is not a socket.
+     */
+    private static void deleteSocket(Path socket) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(socket, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        // sockets are neither regular files, directories nor links
+        if (!attributes.isOther()) {
+            throw new IOException(socket + " exists and is not a socket");
+        }
+        Files.deleteIfExists(socket);
+    }
+
+    /**
+     * Starts serving the tokens of a key on a Unix domain socket, replacing any existing socket file.
+     *
+     * @param socket  the path of the socket file. Must not be null.
+     * @param factory the factory signing the tokens. Must not be null.
+     * @param cache   the cache of the tokens requested without ttl. Must not be null.
+     * @return the running daemon.
+     * @throws IOException if the socket cannot be bound, or if a file other than a socket exists at its path.
+     */
+    public static TokenDaemon start(Path socket, TokenFactory factory, TokenCache cache) throws IOException {
+        Objects.requireNonNull(socket, "socket cannot be null");
+        Objects.requireNonNull(factory, "factory cannot be null");
+        Objects.requireNonNull(cache, "cache cannot be null");
+        return new TokenDaemon(socket, factory, cache);
+    }
+
+    /**
+     * Requests a token from a running daemon.
+     *
+     * @param socket    the path of the socket file of the daemon. Must not be null.
+     * @param userId    the unique identifier of the user, or null to omit the claim.
+     * @param userEmail the email of the user, or null to omit the claim.
+     * @param ttl       the validity of a newly signed token, or null for a cached token.
+     * @return a signed JWT as a String.
+     * @throws IOException    if the daemon cannot be reached.
+     * @throws TokenException if the daemon rejects the request.
+     */
+    public static String fetch(Path socket, String userId, String userEmail, Duration ttl) throws IOException, TokenException {
+        Objects.requireNonNull(socket, "socket cannot be null");
+        StringBuilder request = new StringBuilder(TOKEN);
+        if (userId != null) {
+            request.append(" uid=").append(URLEncoder.encode(userId, StandardCharsets.UTF_8));
+        }
+        if (userEmail != null) {
+            request.append(" email=").append(URLEncoder.encode(userEmail, StandardCharsets.UTF_8));
+        }
+        if (ttl != null) {
+            request.append(" ttl=").append(ttl.getSeconds());
+        }
+
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            writer.write(request.append('\n').toString());
+            writer.flush();
+            String response = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8)).readLine();
+            if (response == null) {
+                throw new IOException("Connection closed by the token daemon");
+            }
+            if (response.startsWith(OK)) {
+                return response.substring(OK.length());
+            }
+            throw new TokenException(response.startsWith(ERR) ? response.substring(ERR.length()) : "Unexpected response: " + response);
+        }
+    }
+
+    /**
+     * @return the path of the socket file.
+     */
+    public Path getSocket() {
+        return socket;
+    }
+
+    /**
+     * Waits until this daemon is closed.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public void await() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file. Connections in progress are closed.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+        acceptor.interrupt();
+        deleteSocket(socket);
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.WARNING, "Token daemon on " + socket + " failed to accept a connection", e);
+            }
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        try (SocketChannel channel = connection) {
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            StringBuilder buffer = new StringBuilder();
+            String line;
+            while ((line = readLine(reader, buffer)) != null) {
+                if (line.length() > MAX_LINE_LENGTH) {
+                    writer.write(ERR + "request longer than " + MAX_LINE_LENGTH + " characters\n");
+                    writer.flush();
+                    return;
+                }
+                writer.write(answer(line));
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (IOException e) {
+            log.log(Level.FINE, "Token daemon connection closed", e);
+        }
+    }
+
+    /**
+     * Reads a line, without its line terminator, stopping as soon as it exceeds {@link #MAX_LINE_LENGTH}.
+     *
+     * @return the line, longer than {@link #MAX_LINE_LENGTH} if cut, or null at the end of the stream.
+     */
+    static String readLine(Reader reader, StringBuilder buffer) throws IOException {
+        buffer.setLength(0);
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                break;
+            }
+            buffer.append((char) c);
+            if (buffer.length() > MAX_LINE_LENGTH + 1) {
+                return buffer.toString();
+            }
+        }
+        if (c == -1 && buffer.length() == 0) {
+            return null;
+        }
+        int length = buffer.length();
+        if (length > 0 && buffer.charAt(length - 1) == '\r') {
+            buffer.setLength(length - 1);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Answers a request line.
+     */
+    String answer(String line) {
+        String[] parts = line.trim().split(" +");
+        if (parts.length == 1 && PING.equals(parts[0])) {
+            return OK + "pong";
+        }
+        if (!TOKEN.equals(parts[0])) {
+            return ERR + "unknown command, expected TOKEN or PING";
+        }
+
+        String userId = null;
+        String userEmail = null;
+        Long ttl = null;
+        for (int i = 1; i < parts.length; i++) {
+            int separator = parts[i].indexOf('=');
+            if (separator < 0) {
+                return ERR + "invalid parameter " + parts[i];
+            }
+            String name = parts[i].substring(0, separator);
+            String value;
+            try {
+                value = URLDecoder.decode(parts[i].substring(separator + 1), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                // malformed percent-encoding
+                return ERR + "invalid parameter " + parts[i];
+            }
+            switch (name) {
+                case "uid":
+                    userId = value;
+                    break;
+                case "email":
+                    userEmail = value;
+                    break;
+                case "ttl":
+                    try {
+                        ttl = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        return ERR + "ttl must be a number of seconds";
+                    }
+                    break;
+                default:
+                    return ERR + "unknown parameter " + name;
+            }
+        }
+
+        try {
+            if (ttl == null) {
+                return OK + cache.get(factory, userId, userEmail);
+            }
+            return OK + factory.sign(userId, userEmail, factory.getClock().instant().plusSeconds(ttl));
+        } catch (TokenException | RuntimeException e) {
+            return ERR + String.valueOf(e.getMessage()).replace('\n', ' ');
+        }
+    }
+}
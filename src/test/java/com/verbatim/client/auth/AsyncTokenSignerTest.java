@@ -0,0 +1,104 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class AsyncTokenSignerTest {
+
+    private static TokenFactory demoFactory() throws TokenException {
+        return new TokenFactory(new KeyLoader().from(Objects.requireNonNull(AsyncTokenSignerTest.class.getResourceAsStream("/demoEcKey.json"))).get());
+    }
+
+    @Test
+    void sign() throws Exception {
+        AsyncTokenSigner signer = new AsyncTokenSigner(demoFactory());
+        String token = signer.sign("myid", "myemail", Instant.now().plus(1, ChronoUnit.HOURS)).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals("myid", JWT.decode(token).getClaim("uid").asString());
+        Assertions.assertNotNull(signer.sign(Instant.now().plus(1, ChronoUnit.HOURS)).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void signJoinsInFlightRequests() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        AsyncTokenSigner signer = new AsyncTokenSigner(demoFactory(), tasks::add);
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+
+        CompletableFuture<String> first = signer.sign("myid", null, expiresAt);
+        CompletableFuture<String> second = signer.sign("myid", null, expiresAt);
+        CompletableFuture<String> other = signer.sign("otherid", null, expiresAt);
+        Assertions.assertEquals(2, tasks.size());
+
+        // cancelling a caller does not affect the others
+        first.cancel(false);
+        tasks.forEach(Runnable::run);
+        Assertions.assertTrue(first.isCancelled());
+        Assertions.assertNotEquals(second.get(), other.get());
+
+        // once completed, a new request signs again
+        signer.sign("myid", null, expiresAt);
+        Assertions.assertEquals(3, tasks.size());
+    }
+
+    @Test
+    void signFails() throws TokenException {
+        AsyncTokenSigner signer = new AsyncTokenSigner(demoFactory());
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> signer.sign(null).get());
+        Assertions.assertInstanceOf(TokenException.class, e.getCause());
+        e = Assertions.assertThrows(ExecutionException.class,
+                () -> signer.sign(Instant.now().minus(1, ChronoUnit.HOURS)).get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(RuntimeException.class, e.getCause());
+
+        AsyncTokenSigner rejecting = new AsyncTokenSigner(demoFactory(), task -> {
+            throw new RejectedExecutionException("full");
+        });
+        e = Assertions.assertThrows(ExecutionException.class, () -> rejecting.sign(Instant.now().plus(1, ChronoUnit.HOURS)).get());
+        Assertions.assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+        Assertions.assertThrows(NullPointerException.class, () -> new AsyncTokenSigner(null));
+        Assertions.assertThrows(NullPointerException.class, () -> new AsyncTokenSigner(demoFactory(), null));
+    }
+
+    @Test
+    void publisher() throws Exception {
+        AsyncTokenSigner signer = new AsyncTokenSigner(demoFactory());
+        CompletableFuture<List<String>> received = new CompletableFuture<>();
+        signer.publisher("myid", null, Instant.now().plus(1, ChronoUnit.HOURS)).subscribe(new Flow.Subscriber<>() {
+            private final List<String> tokens = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(String item) {
+                tokens.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                received.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                received.complete(tokens);
+            }
+        });
+        List<String> tokens = received.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, tokens.size());
+        Assertions.assertEquals("myid", JWT.decode(tokens.get(0)).getClaim("uid").asString());
+    }
+}
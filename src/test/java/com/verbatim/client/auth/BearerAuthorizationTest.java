@@ -0,0 +1,166 @@
+package com.verbatim.client.auth;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class BearerAuthorizationTest {
+
+    private HttpServer server;
+    private URI uri;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final Set<String> revoked = ConcurrentHashMap.newKeySet();
+
+    private static TokenFactory demoFactory() throws TokenException {
+        return new TokenFactory(new KeyLoader().from(Objects.requireNonNull(BearerAuthorizationTest.class.getResourceAsStream("/demoKey.json"))).get());
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            received.add(String.valueOf(authorization));
+            boolean authorized = authorization != null && authorization.startsWith("Bearer ") && !revoked.contains(authorization);
+            byte[] body = (authorized ? "ok" : "unauthorized").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(authorized ? 200 : 401, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();
+        uri = URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v1/ping");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void builderFails() {
+        Assertions.assertThrows(RuntimeException.class, () -> BearerAuthorization.builder().build());
+        Assertions.assertThrows(NullPointerException.class, () -> BearerAuthorization.builder().key(null));
+        Assertions.assertThrows(RuntimeException.class, () -> BearerAuthorization.builder().userId(" "));
+    }
+
+    @Test
+    void header() throws TokenException {
+        MutableClock clock = new MutableClock(Instant.now());
+        TokenFactory factory = new TokenFactory(demoFactory().getSigningKey(), clock);
+        BearerAuthorization authorization = BearerAuthorization.builder()
+                .factory(factory)
+                .cache(TokenCache.builder().lifetime(Duration.ofMinutes(10)).refreshAhead(Duration.ofMinutes(1)).clock(clock).build())
+                .userId("myid")
+                .build();
+
+        String header = authorization.header();
+        Assertions.assertTrue(header.startsWith("Bearer "));
+        Assertions.assertSame(header, authorization.header());
+        Assertions.assertEquals(header, authorization.headerAsync().join());
+
+        // rendered again once the token rotates
+        clock.advance(Duration.ofMinutes(11));
+        String rotated = authorization.header();
+        Assertions.assertNotEquals(header, rotated);
+        Assertions.assertSame(rotated, authorization.header());
+    }
+
+    @Test
+    void send() throws Exception {
+        BearerAuthorization authorization = BearerAuthorization.builder().factory(demoFactory()).build();
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> response = authorization.send(client, HttpRequest.newBuilder(uri), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(List.of(authorization.header()), received);
+    }
+
+    @Test
+    void sendRetriesOnceWithNewToken() throws Exception {
+        MutableClock clock = new MutableClock(Instant.now());
+        BearerAuthorization authorization = BearerAuthorization.builder()
+                .factory(new TokenFactory(demoFactory().getSigningKey(), clock))
+                .build();
+        String header = authorization.header();
+        revoked.add(header);
+        // tokens signed within the same second are identical
+        clock.advance(Duration.ofSeconds(1));
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> response = authorization.send(client, HttpRequest.newBuilder(uri), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("ok", response.body());
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertEquals(header, received.get(0));
+        Assertions.assertNotEquals(header, received.get(1));
+        Assertions.assertEquals(received.get(1), authorization.header());
+
+        // a rejected header is only invalidated once
+        String current = authorization.header();
+        authorization.reject(header);
+        Assertions.assertSame(current, authorization.header());
+    }
+
+    @Test
+    void sendAsync() throws Exception {
+        MutableClock clock = new MutableClock(Instant.now());
+        BearerAuthorization authorization = BearerAuthorization.builder()
+                .factory(new TokenFactory(demoFactory().getSigningKey(), clock))
+                .build();
+        revoked.add(authorization.header());
+        clock.advance(Duration.ofSeconds(1));
+
+        HttpResponse<String> response = authorization
+                .sendAsync(HttpClient.newHttpClient(), HttpRequest.newBuilder(uri), HttpResponse.BodyHandlers.ofString())
+                .join();
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("ok", response.body());
+        Assertions.assertEquals(2, received.size());
+    }
+
+    @Test
+    void sendStopsAfterOneRetry() throws Exception {
+        BearerAuthorization authorization = BearerAuthorization.builder().factory(demoFactory()).build();
+        server.removeContext("/");
+        server.createContext("/", exchange -> {
+            received.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            exchange.sendResponseHeaders(401, -1);
+            exchange.close();
+        });
+        HttpResponse<String> response = authorization.send(HttpClient.newHttpClient(), HttpRequest.newBuilder(uri), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(401, response.statusCode());
+        Assertions.assertEquals(2, received.size());
+    }
+
+    @Test
+    void authorizeUrlConnection() throws Exception {
+        BearerAuthorization authorization = BearerAuthorization.builder().factory(demoFactory()).build();
+        HttpURLConnection connection = authorization.authorize((HttpURLConnection) uri.toURL().openConnection());
+        try {
+            Assertions.assertEquals(200, connection.getResponseCode());
+        } finally {
+            connection.disconnect();
+        }
+        Assertions.assertEquals(List.of(authorization.header()), received);
+    }
+}
@@ -0,0 +1,58 @@
+package com.verbatim.client.auth;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+class CoarseClockTest {
+
+    @Test
+    void ticksInWholeSeconds() {
+        MutableClock base = new MutableClock(Instant.ofEpochSecond(1_700_000_000L, 100_000_000));
+        CoarseClock clock = CoarseClock.of(base);
+        Instant first = clock.instant();
+        Assertions.assertEquals(Instant.ofEpochSecond(1_700_000_000L), first);
+        Assertions.assertEquals(1_700_000_000_000L, clock.millis());
+
+        base.advance(Duration.ofMillis(899));
+        Assertions.assertSame(first, clock.instant());
+        base.advance(Duration.ofMillis(1));
+        Assertions.assertEquals(Instant.ofEpochSecond(1_700_000_001L), clock.instant());
+
+        CoarseClock beforeEpoch = CoarseClock.of(Clock.fixed(Instant.ofEpochMilli(-1), ZoneOffset.UTC));
+        Assertions.assertEquals(Instant.ofEpochSecond(-1), beforeEpoch.instant());
+    }
+
+    @Test
+    void create() {
+        Assertions.assertThrows(NullPointerException.class, () -> CoarseClock.of(null));
+        CoarseClock clock = CoarseClock.systemUTC();
+        Assertions.assertSame(clock, CoarseClock.of(clock));
+        Assertions.assertEquals(ZoneOffset.UTC, clock.getZone());
+        Assertions.assertSame(clock, clock.withZone(ZoneOffset.UTC));
+        Assertions.assertEquals(ZoneOffset.ofHours(2), clock.withZone(ZoneOffset.ofHours(2)).getZone());
+        Assertions.assertEquals(CoarseClock.of(Clock.systemUTC()), clock);
+        Assertions.assertTrue(Math.abs(clock.millis() - System.currentTimeMillis()) < 2000);
+    }
+
+    @Test
+    void tokensOfTheSameSecondAreIdentical() throws TokenException {
+        Key key = new KeyLoader().from(Objects.requireNonNull(CoarseClockTest.class.getResourceAsStream("/demoKey.json"))).get();
+        MutableClock base = new MutableClock(Instant.now().truncatedTo(ChronoUnit.SECONDS).plusMillis(100));
+        CoarseClock clock = CoarseClock.of(base);
+        Instant expiresAt = clock.instant().plusSeconds(3600);
+
+        String token = new TokenBuilder().key(key).clock(clock).expiresAt(expiresAt).userId("myid").build();
+        base.advance(Duration.ofMillis(1));
+        TokenFactory factory = new TokenFactory(key.signingKey(), clock);
+        Assertions.assertEquals(token, factory.sign("myid", null, expiresAt));
+        base.advance(Duration.ofSeconds(1));
+        Assertions.assertNotEquals(token, factory.sign("myid", null, expiresAt));
+    }
+}
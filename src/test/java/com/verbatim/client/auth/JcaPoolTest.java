@@ -0,0 +1,50 @@
+package com.verbatim.client.auth;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class JcaPoolTest {
+
+    @Test
+    void reuse() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        JcaPool<Object> pool = new JcaPool<>(() -> created.incrementAndGet(), 3);
+        Assertions.assertEquals(4, pool.size());
+
+        Object first = pool.acquire();
+        pool.release(first);
+        Assertions.assertSame(first, pool.acquire());
+        Assertions.assertEquals(1, created.get());
+
+        Object second = pool.acquire();
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(2, created.get());
+    }
+
+    @Test
+    void fullPoolDropsInstances() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        JcaPool<Object> pool = new JcaPool<>(() -> created.incrementAndGet(), 2);
+        Object[] instances = {pool.acquire(), pool.acquire(), pool.acquire()};
+        for (Object instance : instances) {
+            pool.release(instance);
+        }
+        pool.acquire();
+        pool.acquire();
+        Assertions.assertEquals(3, created.get());
+        pool.acquire();
+        Assertions.assertEquals(4, created.get());
+    }
+
+    @Test
+    void disabled() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        JcaPool<Object> pool = new JcaPool<>(() -> created.incrementAndGet(), 0);
+        Assertions.assertEquals(0, pool.size());
+        pool.release(pool.acquire());
+        pool.acquire();
+        Assertions.assertEquals(2, created.get());
+    }
+}
@@ -0,0 +1,163 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class JcaSignerTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+    private static final Instant ISSUED_AT = Instant.ofEpochSecond(1_700_000_000L);
+    private static final Instant EXPIRES_AT = Instant.ofEpochSecond(1_700_003_600L);
+
+    private static Path keyStore() throws Exception {
+        return Paths.get(Objects.requireNonNull(JcaSignerTest.class.getResource("/demoKeyStore.p12")).toURI());
+    }
+
+    private static Key key(String resource) {
+        return new KeyLoader().from(Objects.requireNonNull(JcaSignerTest.class.getResourceAsStream(resource))).get();
+    }
+
+    private static JcaSigner.Builder rsa() throws Exception {
+        return JcaSigner.builder().keyId("MY_KEY_ID").organizationId("MY_ORG_ID").pkcs12(keyStore(), "rsa", PASSWORD);
+    }
+
+    @Test
+    void signWithPkcs12() throws Exception {
+        JcaSigner signer = rsa().build();
+        Assertions.assertEquals(SigningAlgorithm.RS512, signer.getAlgorithm());
+        Assertions.assertNotNull(signer.getPublicKey());
+
+        // RSA signatures are deterministic: same key, same token as the PEM encoded key
+        SigningKey pem = key("/demoKey.json").signingKey();
+        Assertions.assertEquals(pem.getEncoder().encode("myid", "myemail", ISSUED_AT, EXPIRES_AT),
+                SigningKey.of(signer).getEncoder().encode("myid", "myemail", ISSUED_AT, EXPIRES_AT));
+
+        String token = new TokenFactory(signer).sign("myid", null, Instant.now().plus(1, ChronoUnit.HOURS));
+        DecodedJWT jwt = TokenVerifier.builder().key(key("/demoKey.json")).build().verify(token);
+        Assertions.assertEquals("MY_KEY_ID", jwt.getKeyId());
+        Assertions.assertEquals("MY_ORG_ID", jwt.getSubject());
+        Assertions.assertEquals("myid", jwt.getClaim("uid").asString());
+    }
+
+    @Test
+    void signEcWithPkcs12() throws Exception {
+        JcaSigner signer = JcaSigner.builder()
+                .keyId("MY_EC_KEY_ID")
+                .organizationId("MY_ORG_ID")
+                .pkcs12(keyStore(), "ec", PASSWORD)
+                .build();
+        Assertions.assertEquals(SigningAlgorithm.ES256, signer.getAlgorithm());
+
+        TokenFactory factory = new TokenFactory(signer);
+        Assertions.assertSame(signer, factory.getSigningKey().getSigner());
+        DecodedJWT jwt = JWT.decode(factory.sign(Instant.now().plus(1, ChronoUnit.HOURS)));
+        Assertions.assertEquals("ES256", jwt.getAlgorithm());
+        Algorithm.ECDSA256((ECPublicKey) signer.getPublicKey(), null).verify(jwt);
+        Algorithm.ECDSA256((ECPublicKey) key("/demoEcKey.json").signingKey().getPublicKey(), null).verify(jwt);
+    }
+
+    @Test
+    void signWithProvider() throws Exception {
+        JcaSigner signer = rsa().provider("SunRsaSign").build();
+        Assertions.assertEquals("SunRsaSign", signer.getProvider().getName());
+        String token = new TokenBuilder().signer(signer).expiresAt(Instant.now().plus(1, ChronoUnit.HOURS)).build();
+        TokenVerifier.builder().key(key("/demoKey.json")).build().verify(token);
+
+        Assertions.assertThrows(TokenException.class, () -> rsa().provider("SunEC").build());
+        Assertions.assertThrows(RuntimeException.class, () -> rsa().provider("NoSuchProvider"));
+    }
+
+    @Test
+    void signConcurrently() throws Exception {
+        for (JcaSigner signer : new JcaSigner[]{rsa().build(), rsa().poolSize(0).build()}) {
+            TokenFactory factory = new TokenFactory(signer);
+            TokenVerifier verifier = TokenVerifier.builder().key(key("/demoKey.json")).maximumCacheSize(0).build();
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<String>> tokens = new ArrayList<>();
+                for (int i = 0; i < 64; i++) {
+                    String userId = "user" + i;
+                    tokens.add(executor.submit(() -> factory.sign(userId, null, Instant.now().plus(1, ChronoUnit.HOURS))));
+                }
+                for (int i = 0; i < tokens.size(); i++) {
+                    Assertions.assertEquals("user" + i, verifier.verify(tokens.get(i).get()).getClaim("uid").asString());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        Assertions.assertEquals(0, rsa().poolSize(0).build().getPoolSize());
+        Assertions.assertTrue(rsa().poolSize(3).build().getPoolSize() >= 3);
+        Assertions.assertThrows(RuntimeException.class, () -> rsa().poolSize(-1));
+    }
+
+    @Test
+    void buildFails() throws Exception {
+        Assertions.assertThrows(TokenException.class,
+                () -> JcaSigner.builder().pkcs12(keyStore(), "rsa", "wrong".toCharArray()));
+        Assertions.assertThrows(TokenException.class,
+                () -> JcaSigner.builder().pkcs12(keyStore(), "unknown", PASSWORD));
+        Assertions.assertThrows(TokenException.class, () -> rsa().algorithm(SigningAlgorithm.ES256).build());
+        Assertions.assertThrows(TokenException.class, () -> JcaSigner.builder().keyId("MY_EC_KEY_ID")
+                .organizationId("MY_ORG_ID").pkcs12(keyStore(), "ec", PASSWORD).algorithm(SigningAlgorithm.ES384).build());
+        Assertions.assertThrows(RuntimeException.class,
+                () -> JcaSigner.builder().organizationId("MY_ORG_ID").pkcs12(keyStore(), "rsa", PASSWORD).build());
+        Assertions.assertThrows(RuntimeException.class, () -> JcaSigner.builder().keyId("MY_KEY_ID").organizationId("MY_ORG_ID").build());
+    }
+
+    @Test
+    void signWithCustomSigner() throws Exception {
+        JcaSigner delegate = rsa().build();
+        AtomicInteger calls = new AtomicInteger();
+        Signer signer = new Signer() {
+            @Override
+            public String getKeyId() {
+                return "MY_KEY_ID";
+            }
+
+            @Override
+            public String getOrganizationId() {
+                return "MY_ORG_ID";
+            }
+
+            @Override
+            public SigningAlgorithm getAlgorithm() {
+                return SigningAlgorithm.RS512;
+            }
+
+            @Override
+            public byte[] sign(byte[] input, int offset, int length) throws GeneralSecurityException {
+                calls.incrementAndGet();
+                return delegate.sign(input, offset, length);
+            }
+        };
+
+        TokenFactory factory = new TokenFactory(signer);
+        String token = factory.sign(Instant.now().plus(1, ChronoUnit.HOURS));
+        Assertions.assertEquals(1, calls.get());
+        TokenVerifier.builder().key(key("/demoKey.json")).build().verify(token);
+
+        PublicKey publicKey = factory.getSigningKey().getPublicKey();
+        Assertions.assertNull(publicKey);
+        Assertions.assertNull(factory.getSigningKey().getPrivateKey());
+        Assertions.assertThrows(IllegalStateException.class, () -> factory.getSigningKey().getAlgorithm());
+    }
+}
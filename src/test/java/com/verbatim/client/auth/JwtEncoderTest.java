@@ -0,0 +1,103 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.interfaces.ECPublicKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+
+class JwtEncoderTest {
+
+    private static final Instant ISSUED_AT = Instant.ofEpochSecond(1_700_000_000L, 123_456_789);
+    private static final Instant EXPIRES_AT = Instant.ofEpochSecond(1_700_003_600L, 987_654_321);
+
+    private static SigningKey signingKey(String resource) throws TokenException {
+        return new KeyLoader().from(Objects.requireNonNull(JwtEncoderTest.class.getResourceAsStream(resource))).get().signingKey();
+    }
+
+    private static String jwtCreator(SigningKey signingKey, String userId, String userEmail) {
+        return jwtCreator(signingKey, userId, userEmail, null);
+    }
+
+    private static String jwtCreator(SigningKey signingKey, String userId, String userEmail, String jwtId) {
+        JWTCreator.Builder builder = JWT.create()
+                .withIssuer("verbatim_client")
+                .withIssuedAt(ISSUED_AT)
+                .withSubject(signingKey.getOrganizationId())
+                .withKeyId(signingKey.getKeyId())
+                .withExpiresAt(EXPIRES_AT);
+        if (userId != null) {
+            builder.withClaim("uid", userId);
+        }
+        if (userEmail != null) {
+            builder.withClaim("email", userEmail);
+        }
+        if (jwtId != null) {
+            builder.withJWTId(jwtId);
+        }
+        return builder.sign(signingKey.getAlgorithm());
+    }
+
+    @Test
+    void encodeMatchesJwtCreator() throws Exception {
+        SigningKey signingKey = signingKey("/demoKey.json");
+        JwtEncoder encoder = signingKey.getEncoder();
+        Assertions.assertEquals(jwtCreator(signingKey, null, null), encoder.encode(null, null, ISSUED_AT, EXPIRES_AT));
+        Assertions.assertEquals(jwtCreator(signingKey, "myid", null), encoder.encode("myid", null, ISSUED_AT, EXPIRES_AT));
+        Assertions.assertEquals(jwtCreator(signingKey, null, "myemail"), encoder.encode(null, "myemail", ISSUED_AT, EXPIRES_AT));
+        Assertions.assertEquals(jwtCreator(signingKey, "myid", "myemail"), encoder.encode("myid", "myemail", ISSUED_AT, EXPIRES_AT));
+    }
+
+    @Test
+    void encodeJwtId() throws Exception {
+        SigningKey signingKey = signingKey("/demoKey.json");
+        JwtEncoder encoder = signingKey.getEncoder();
+        String jwtId = TokenFactory.newJwtId();
+        Assertions.assertEquals(jwtCreator(signingKey, null, null, jwtId), encoder.encode(null, null, jwtId, ISSUED_AT, EXPIRES_AT));
+        Assertions.assertEquals(jwtCreator(signingKey, "myid", "myemail", jwtId), encoder.encode("myid", "myemail", jwtId, ISSUED_AT, EXPIRES_AT));
+        Assertions.assertEquals(jwtId, JWT.decode(encoder.encode("myid", null, jwtId, ISSUED_AT, EXPIRES_AT)).getId());
+    }
+
+    @Test
+    void encodeEscapesLikeJackson() throws Exception {
+        SigningKey signingKey = signingKey("/demoKey.json");
+        String userId = "quote\" backslash\\ slash/ \b\f\n\r\t \u0001\u001f\u007f";
+        String userEmail = "\u00e9\u20ac\u2028\ud83d\ude00\ud800@verbatim-ai.com";
+        Assertions.assertEquals(jwtCreator(signingKey, userId, userEmail),
+                signingKey.getEncoder().encode(userId, userEmail, ISSUED_AT, EXPIRES_AT));
+    }
+
+    @Test
+    void encodeEc() throws Exception {
+        SigningKey signingKey = signingKey("/demoEcKey.json");
+        String token = signingKey.getEncoder().encode("myid", "myemail", ISSUED_AT, EXPIRES_AT);
+        String expected = jwtCreator(signingKey, "myid", "myemail");
+        // ECDSA signatures are randomized, only the signed content can be compared
+        Assertions.assertEquals(expected.substring(0, expected.lastIndexOf('.')), token.substring(0, token.lastIndexOf('.')));
+
+        DecodedJWT jwt = JWT.decode(token);
+        Algorithm.ECDSA256((ECPublicKey) signingKey.getPublicKey(), null).verify(jwt);
+        Assertions.assertEquals("myemail", jwt.getClaim("email").asString());
+    }
+
+    @Test
+    void appendBase64Url() {
+        for (int length = 0; length < 10; length++) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) (i * 37 - 100);
+            }
+            JwtEncoder.ByteArray out = new JwtEncoder.ByteArray(1);
+            JwtEncoder.appendBase64Url(out, bytes, 0, length);
+            Assertions.assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes),
+                    new String(out.toArray(), StandardCharsets.US_ASCII));
+        }
+    }
+}
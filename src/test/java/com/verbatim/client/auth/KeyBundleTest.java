@@ -0,0 +1,121 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Objects;
+
+class KeyBundleTest {
+
+    @TempDir
+    Path directory;
+
+    private static String resource(String name) throws IOException {
+        try (InputStream inputStream = Objects.requireNonNull(KeyBundleTest.class.getResourceAsStream(name))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Path writeTenants(int count) throws IOException {
+        Path keys = Files.createDirectory(directory.resolve("keys"));
+        String json = resource("/demoKey.json");
+        for (int i = 0; i < count; i++) {
+            Files.writeString(keys.resolve("tenant" + i + ".json"),
+                    json.replace("MY_KEY_ID", "KEY_" + i).replace("MY_ORG_ID", "ORG_" + i));
+        }
+        return keys;
+    }
+
+    @Test
+    void convertAndOpen() throws Exception {
+        Path keys = writeTenants(12);
+        Files.writeString(keys.resolve("ec.json"), resource("/demoEcKey.json").replace("MY_ORG_ID", "ORG_EC"));
+        Path bundle = directory.resolve("keys.bin");
+        Assertions.assertEquals(13, KeyBundle.convert(keys, bundle));
+
+        KeyBundle keyBundle = KeyBundle.builder(bundle).maximumParsed(4).build();
+        Assertions.assertEquals(13, keyBundle.size());
+        Assertions.assertEquals(0, keyBundle.parsedCount());
+        Assertions.assertNull(keyBundle.getByKeyId("UNKNOWN"));
+        Assertions.assertNull(keyBundle.getByKeyId("KEY_"));
+        Assertions.assertNull(keyBundle.getByOrganizationId("UNKNOWN"));
+
+        for (int i = 0; i < 12; i++) {
+            TokenFactory factory = keyBundle.getByKeyId("KEY_" + i);
+            Assertions.assertEquals("ORG_" + i, factory.getSigningKey().getOrganizationId());
+            Assertions.assertEquals(SigningAlgorithm.RS512, factory.getSigningKey().getSigningAlgorithm());
+            Assertions.assertEquals("KEY_" + i, keyBundle.getByOrganizationId("ORG_" + i).getSigningKey().getKeyId());
+        }
+        // only the last keys used are kept parsed
+        Assertions.assertEquals(4, keyBundle.parsedCount());
+        TokenFactory factory = keyBundle.getByKeyId("KEY_11");
+        Assertions.assertSame(factory, keyBundle.getByOrganizationId("ORG_11"));
+
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+        DecodedJWT jwt = JWT.decode(factory.sign("myid", null, expiresAt));
+        Assertions.assertEquals("KEY_11", jwt.getKeyId());
+        Assertions.assertEquals("ORG_11", jwt.getSubject());
+        SigningKey demoKey = new KeyLoader().from(Objects.requireNonNull(KeyBundleTest.class.getResourceAsStream("/demoKey.json"))).get().signingKey();
+        Algorithm.RSA512((RSAPublicKey) demoKey.getPublicKey(), null).verify(jwt);
+
+        TokenFactory ecFactory = keyBundle.getByOrganizationId("ORG_EC");
+        Assertions.assertEquals("MY_EC_KEY_ID", ecFactory.getSigningKey().getKeyId());
+        Assertions.assertEquals(SigningAlgorithm.ES256, ecFactory.getSigningKey().getSigningAlgorithm());
+        Assertions.assertEquals("ES256", JWT.decode(ecFactory.sign(expiresAt)).getAlgorithm());
+    }
+
+    @Test
+    void lastKeySignsForOrganization() throws Exception {
+        Path keys = writeTenants(2);
+        Files.writeString(keys.resolve("tenant9.json"), resource("/demoEcKey.json").replace("MY_ORG_ID", "ORG_1"));
+        Path bundle = directory.resolve("keys.bin");
+        KeyBundle.convert(keys, bundle);
+        KeyBundle keyBundle = KeyBundle.open(bundle);
+        Assertions.assertEquals(3, keyBundle.size());
+        Assertions.assertEquals("MY_EC_KEY_ID", keyBundle.getByOrganizationId("ORG_1").getSigningKey().getKeyId());
+        Assertions.assertEquals("ORG_1", keyBundle.getByKeyId("KEY_1").getSigningKey().getOrganizationId());
+    }
+
+    @Test
+    void replaceWhileOpen() throws Exception {
+        Path bundle = directory.resolve("keys.bin");
+        KeyBundle.convert(writeTenants(3), bundle);
+        KeyBundle keyBundle = KeyBundle.open(bundle);
+
+        Path empty = Files.createDirectory(directory.resolve("empty"));
+        Assertions.assertEquals(0, KeyBundle.convert(empty, bundle));
+        Assertions.assertEquals(0, KeyBundle.open(bundle).size());
+        Assertions.assertEquals("ORG_2", keyBundle.getByKeyId("KEY_2").getSigningKey().getOrganizationId());
+    }
+
+    @Test
+    void openFails() throws Exception {
+        Assertions.assertThrows(NullPointerException.class, () -> KeyBundle.open(null));
+        Assertions.assertThrows(RuntimeException.class, () -> KeyBundle.builder(directory).maximumParsed(0));
+        Assertions.assertThrows(TokenException.class, () -> KeyBundle.open(directory.resolve("missing.bin")));
+
+        Path notABundle = directory.resolve("key.json");
+        Files.writeString(notABundle, resource("/demoKey.json"));
+        Assertions.assertThrows(TokenException.class, () -> KeyBundle.open(notABundle));
+
+        Path bundle = directory.resolve("keys.bin");
+        KeyBundle.convert(writeTenants(2), bundle);
+        byte[] bytes = Files.readAllBytes(bundle);
+        Files.write(bundle, Arrays.copyOf(bytes, bytes.length - 100));
+        KeyBundle truncated = KeyBundle.open(bundle);
+        Assertions.assertThrows(TokenException.class, () -> truncated.getByKeyId("KEY_1"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+
+class KeyRingTest {
+
+    @TempDir
+    Path directory;
+
+    private static String resource(String name) throws IOException {
+        try (InputStream inputStream = Objects.requireNonNull(KeyRingTest.class.getResourceAsStream(name))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void writeTenants(int count) throws IOException {
+        String json = resource("/demoKey.json");
+        for (int i = 0; i < count; i++) {
+            Files.writeString(directory.resolve("tenant" + i + ".json"),
+                    json.replace("MY_KEY_ID", "KEY_" + i).replace("MY_ORG_ID", "ORG_" + i));
+        }
+    }
+
+    @Test
+    void load() throws Exception {
+        writeTenants(12);
+        Files.writeString(directory.resolve("README.txt"), "not a key");
+        KeyRing keyRing = KeyRing.load(directory);
+        Assertions.assertEquals(12, keyRing.size());
+        Assertions.assertEquals("ORG_3", keyRing.getByKeyId("KEY_3").getSigningKey().getOrganizationId());
+        Assertions.assertEquals("KEY_7", keyRing.getByOrganizationId("ORG_7").getSigningKey().getKeyId());
+        Assertions.assertNull(keyRing.getByKeyId("UNKNOWN"));
+        Assertions.assertNull(keyRing.getByOrganizationId("UNKNOWN"));
+
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+        DecodedJWT jwt = JWT.decode(keyRing.sign("ORG_5", "myid", null, expiresAt));
+        Assertions.assertEquals("KEY_5", jwt.getKeyId());
+        Assertions.assertEquals("ORG_5", jwt.getSubject());
+        Assertions.assertEquals("KEY_2", JWT.decode(keyRing.signWithKey("KEY_2", null, null, expiresAt)).getKeyId());
+        Assertions.assertThrows(TokenException.class, () -> keyRing.sign("UNKNOWN", null, null, expiresAt));
+        Assertions.assertThrows(TokenException.class, () -> keyRing.signWithKey("UNKNOWN", null, null, expiresAt));
+    }
+
+    @Test
+    void loadFails() throws Exception {
+        Assertions.assertThrows(NullPointerException.class, () -> KeyRing.load(null));
+        Assertions.assertThrows(TokenException.class, () -> KeyRing.load(directory.resolve("missing")));
+
+        writeTenants(2);
+        Files.writeString(directory.resolve("duplicate.json"), resource("/demoKey.json").replace("MY_KEY_ID", "KEY_1"));
+        TokenException duplicate = Assertions.assertThrows(TokenException.class, () -> KeyRing.load(directory));
+        Assertions.assertTrue(duplicate.getMessage().contains("KEY_1"));
+
+        Files.writeString(directory.resolve("duplicate.json"), resource("/invalidKey.json"));
+        TokenException invalid = Assertions.assertThrows(TokenException.class, () -> KeyRing.load(directory));
+        Assertions.assertTrue(invalid.getMessage().contains("duplicate.json"));
+    }
+
+    @Test
+    void addAndRemove() throws Exception {
+        Key key = new KeyLoader().from(Objects.requireNonNull(KeyRingTest.class.getResourceAsStream("/demoKey.json"))).get();
+        Key ecKey = new KeyLoader().from(Objects.requireNonNull(KeyRingTest.class.getResourceAsStream("/demoEcKey.json"))).get();
+        KeyRing keyRing = new KeyRing().add(key).add(ecKey);
+        Assertions.assertEquals(2, keyRing.size());
+        // both keys belong to MY_ORG_ID, the last one added signs for it
+        Assertions.assertEquals("MY_EC_KEY_ID", keyRing.getByOrganizationId("MY_ORG_ID").getSigningKey().getKeyId());
+
+        Assertions.assertTrue(keyRing.remove("MY_EC_KEY_ID"));
+        Assertions.assertFalse(keyRing.remove("MY_EC_KEY_ID"));
+        Assertions.assertEquals("MY_KEY_ID", keyRing.getByOrganizationId("MY_ORG_ID").getSigningKey().getKeyId());
+        Assertions.assertTrue(keyRing.remove("MY_KEY_ID"));
+        Assertions.assertNull(keyRing.getByOrganizationId("MY_ORG_ID"));
+    }
+
+    @Test
+    void addMovesOrganization() throws Exception {
+        String json = resource("/demoKey.json");
+        KeyRing keyRing = new KeyRing().add(new KeyLoader().from(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))).get());
+        Key moved = new KeyLoader().from(new ByteArrayInputStream(json.replace("MY_ORG_ID", "OTHER_ORG_ID")
+                .getBytes(StandardCharsets.UTF_8))).get();
+        keyRing.add(moved);
+        Assertions.assertEquals(1, keyRing.size());
+        Assertions.assertNull(keyRing.getByOrganizationId("MY_ORG_ID"));
+        Assertions.assertSame(keyRing.getByKeyId("MY_KEY_ID"), keyRing.getByOrganizationId("OTHER_ORG_ID"));
+    }
+
+    @Test
+    void removeConcurrently() throws Exception {
+        String json = resource("/demoKey.json");
+        for (int round = 0; round < 20; round++) {
+            KeyRing keyRing = new KeyRing();
+            for (int i = 0; i < 2; i++) {
+                keyRing.add(new KeyLoader().from(new ByteArrayInputStream(json.replace("MY_KEY_ID", "KEY_" + i)
+                        .getBytes(StandardCharsets.UTF_8))).get());
+            }
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[2];
+            for (int i = 0; i < threads.length; i++) {
+                String keyId = "KEY_" + i;
+                threads[i] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    keyRing.remove(keyId);
+                });
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            // no removed key is left signing for the organization
+            Assertions.assertEquals(0, keyRing.size());
+            Assertions.assertNull(keyRing.getByOrganizationId("MY_ORG_ID"));
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.verbatim.client.auth;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
 class KeyTest {
 
     @Test
@@ -80,6 +83,48 @@ class KeyTest {
         key.keyId="ID";
         key.organizationId="OID";
         key.privateKey="privateKey";
-        Assertions.assertEquals("Key(keyId=ID, organizationId=OID, privateKey=privateKey, publicKey=null)", key.toString());
+        Assertions.assertEquals("Key(keyId=ID, organizationId=OID, publicKey=null, algorithm=null)", key.toString());
+    }
+
+    @Test
+    void signingKey() throws TokenException {
+        Key key = new KeyLoader().from(Objects.requireNonNull(KeyTest.class.getResourceAsStream("/demoKey.json"))).get();
+        SigningKey signingKey = key.signingKey();
+        Assertions.assertNotNull(signingKey);
+        Assertions.assertSame(signingKey, key.signingKey());
+        Assertions.assertEquals("MY_KEY_ID", signingKey.getKeyId());
+        Assertions.assertEquals("MY_ORG_ID", signingKey.getOrganizationId());
+        Assertions.assertEquals("RS512", signingKey.getAlgorithm().getName());
+    }
+
+    @Test
+    void signingKeyFails() {
+        Key key = new KeyLoader().from(Objects.requireNonNull(KeyTest.class.getResourceAsStream("/invalidKey.json"))).get();
+        Assertions.assertThrows(TokenException.class, key::signingKey);
+    }
+
+    @Test
+    void secretHolder() throws TokenException {
+        Key key = new KeyLoader().secretHolder(true).from(Objects.requireNonNull(KeyTest.class.getResourceAsStream("/demoKey.json"))).get();
+        Assertions.assertNull(key.getPrivateKey());
+        Assertions.assertFalse(key.toString().contains("PRIVATE"));
+
+        Key plain = new KeyLoader().from(Objects.requireNonNull(KeyTest.class.getResourceAsStream("/demoKey.json"))).get();
+        Assertions.assertEquals(plain.signingKey().getPrivateKey(), key.signingKey().getPrivateKey());
+
+        ByteBuffer secret = key.privateKeySecret.read();
+        key.close();
+        for (int i = secret.position(); i < secret.limit(); i++) {
+            Assertions.assertEquals(0, secret.get(i));
+        }
+        // the parsed key outlives the wiped PEM
+        Assertions.assertNotNull(key.signingKey());
+    }
+
+    @Test
+    void secretHolderClosedBeforeParsing() {
+        Key key = new KeyLoader().secretHolder(true).from(Objects.requireNonNull(KeyTest.class.getResourceAsStream("/demoEcKey.json"))).get();
+        key.close();
+        Assertions.assertThrows(TokenException.class, key::signingKey);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.verbatim.client.auth;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+class KeyWatcherTest {
+
+    @TempDir
+    Path directory;
+
+    private static String demoKeyJson() throws IOException {
+        try (InputStream inputStream = Objects.requireNonNull(KeyWatcherTest.class.getResourceAsStream("/demoKey.json"))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void watchFails() throws IOException {
+        Assertions.assertThrows(NullPointerException.class, () -> KeyWatcher.watch(null));
+        Assertions.assertThrows(TokenException.class, () -> KeyWatcher.watch(directory.resolve("missing.json")));
+        Path file = Files.writeString(directory.resolve("key.json"), "{}");
+        Assertions.assertThrows(TokenException.class, () -> KeyWatcher.watch(file));
+        Assertions.assertThrows(RuntimeException.class, () -> KeyWatcher.builder(file).pollInterval(Duration.ZERO));
+    }
+
+    @Test
+    void reload() throws Exception {
+        reload(true);
+    }
+
+    @Test
+    void reloadPolling() throws Exception {
+        reload(false);
+    }
+
+    private void reload(boolean watchService) throws Exception {
+        Path file = Files.writeString(directory.resolve("key.json"), demoKeyJson());
+        List<Key> reloaded = new CopyOnWriteArrayList<>();
+        try (KeyWatcher watcher = KeyWatcher.builder(file)
+                .pollInterval(Duration.ofMillis(50))
+                .watchService(watchService)
+                .listener(reloaded::add)
+                .build()) {
+            Assertions.assertEquals("MY_KEY_ID", watcher.get().getKeyId());
+            TokenFactory factory = watcher.factory();
+            Assertions.assertEquals("MY_KEY_ID", factory.getSigningKey().getKeyId());
+
+            // a broken file is ignored, the previous key is kept
+            Files.writeString(file, "{\"keyId\":\"BROKEN\"}");
+            Thread.sleep(300);
+            Assertions.assertEquals("MY_KEY_ID", watcher.get().getKeyId());
+            Assertions.assertSame(factory, watcher.factory());
+
+            Files.writeString(file, demoKeyJson().replace("MY_KEY_ID", "NEW_KEY_ID"));
+            await(() -> "NEW_KEY_ID".equals(watcher.get().getKeyId()));
+            Assertions.assertEquals("NEW_KEY_ID", watcher.factory().getSigningKey().getKeyId());
+            // the listener is called after the new key is published
+            await(() -> !reloaded.isEmpty());
+            Assertions.assertEquals("NEW_KEY_ID", reloaded.get(reloaded.size() - 1).getKeyId());
+        }
+    }
+
+    @Test
+    void reloadRetried() throws Exception {
+        String json = demoKeyJson();
+        Path file = Files.writeString(directory.resolve("key.json"), json);
+        try (KeyWatcher watcher = KeyWatcher.builder(file)
+                .pollInterval(Duration.ofMillis(50))
+                .watchService(false)
+                .build()) {
+            // a broken file, e.g. partially written
+            Files.writeString(file, json.substring(0, json.lastIndexOf('}')) + " ");
+            FileTime modified = Files.getLastModifiedTime(file);
+            Thread.sleep(300);
+            Assertions.assertEquals("MY_KEY_ID", watcher.get().getKeyId());
+
+            // then completed without changing its modification time nor its size
+            Files.writeString(file, json.replace("MY_KEY_ID", "NW_KEY_ID"));
+            Files.setLastModifiedTime(file, modified);
+            await(() -> "NW_KEY_ID".equals(watcher.get().getKeyId()));
+        }
+    }
+}
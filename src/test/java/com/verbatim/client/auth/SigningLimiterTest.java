@@ -0,0 +1,243 @@
+package com.verbatim.client.auth;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+class SigningLimiterTest {
+
+    private static final Instant EXPIRES_AT = Instant.now().plus(1, ChronoUnit.HOURS);
+
+    /**
+     * Signs with the demo key, once the gate is open.
+     */
+    private static final class GatedSigner implements Signer {
+        final Signer delegate;
+        final Semaphore entered = new Semaphore(0);
+        volatile CountDownLatch gate = new CountDownLatch(0);
+
+        GatedSigner() throws TokenException {
+            delegate = new KeyLoader().from(Objects.requireNonNull(SigningLimiterTest.class.getResourceAsStream("/demoKey.json")))
+                    .get().signingKey().getSigner();
+        }
+
+        void close() {
+            entered.drainPermits();
+            gate = new CountDownLatch(1);
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        @Override
+        public String getKeyId() {
+            return delegate.getKeyId();
+        }
+
+        @Override
+        public String getOrganizationId() {
+            return delegate.getOrganizationId();
+        }
+
+        @Override
+        public SigningAlgorithm getAlgorithm() {
+            return delegate.getAlgorithm();
+        }
+
+        @Override
+        public PublicKey getPublicKey() {
+            return delegate.getPublicKey();
+        }
+
+        @Override
+        public byte[] sign(byte[] input, int offset, int length) throws GeneralSecurityException {
+            entered.release();
+            try {
+                if (!gate.await(30, TimeUnit.SECONDS)) {
+                    throw new GeneralSecurityException("gate left closed");
+                }
+            } catch (InterruptedException e) {
+                throw new GeneralSecurityException(e);
+            }
+            return delegate.sign(input, offset, length);
+        }
+    }
+
+    /**
+     * Signs a token for the given user in another thread, and waits for the signature to start.
+     */
+    private static CompletableFuture<String> signBlocked(SigningLimiter limiter, TokenFactory factory, GatedSigner signer, String userId)
+            throws InterruptedException {
+        CompletableFuture<String> future = signAsync(limiter, factory, userId, Duration.ofSeconds(1));
+        Assertions.assertTrue(signer.entered.tryAcquire(10, TimeUnit.SECONDS));
+        return future;
+    }
+
+    /**
+     * Signs a token for the given user in a new thread: the common pool may have a single thread.
+     */
+    private static CompletableFuture<String> signAsync(SigningLimiter limiter, TokenFactory factory, String userId, Duration maxWait) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(limiter.sign(factory, userId, null, null, EXPIRES_AT, maxWait));
+            } catch (TokenException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    @Test
+    void builderFails() {
+        Assertions.assertThrows(RuntimeException.class, () -> SigningLimiter.builder().concurrency(0));
+        Assertions.assertThrows(RuntimeException.class, () -> SigningLimiter.builder().maxQueued(-1));
+        Assertions.assertThrows(RuntimeException.class, () -> SigningLimiter.builder().maxWait(Duration.ofSeconds(-1)));
+        Assertions.assertThrows(RuntimeException.class, () -> SigningLimiter.builder().minRemaining(Duration.ofSeconds(-1)));
+        Assertions.assertThrows(RuntimeException.class, () -> SigningLimiter.builder().maximumSize(0));
+        Assertions.assertThrows(RuntimeException.class, () -> SigningLimiter.builder().name(" "));
+    }
+
+    @Test
+    void sign() throws Exception {
+        SigningLimiter limiter = SigningLimiter.builder().concurrency(2).build();
+        TokenFactory factory = new TokenFactory(new GatedSigner());
+        Assertions.assertNotNull(limiter.sign(factory, "myid", null, EXPIRES_AT));
+        Assertions.assertEquals(1, limiter.getAdmittedCount());
+        Assertions.assertEquals(0, limiter.getActiveCount());
+        Assertions.assertEquals(0, limiter.getQueueDepth());
+
+        String token = new TokenBuilder().signer(new GatedSigner()).limiter(limiter).expiresAt(EXPIRES_AT).build();
+        Assertions.assertNotNull(token);
+        Assertions.assertEquals(2, limiter.getAdmittedCount());
+    }
+
+    @Test
+    void rejectWhenQueueFull() throws Exception {
+        GatedSigner signer = new GatedSigner();
+        TokenFactory factory = new TokenFactory(signer);
+        SigningLimiter limiter = SigningLimiter.builder().concurrency(1).maxQueued(0).build();
+        signer.close();
+        CompletableFuture<String> blocked = signBlocked(limiter, factory, signer, "first");
+        Assertions.assertEquals(1, limiter.getActiveCount());
+
+        Assertions.assertThrows(SigningRejectedException.class, () -> limiter.sign(factory, "second", null, EXPIRES_AT));
+        Assertions.assertEquals(1, limiter.getRejectedCount());
+
+        signer.open();
+        Assertions.assertNotNull(blocked.get(10, TimeUnit.SECONDS));
+        Assertions.assertNotNull(limiter.sign(factory, "second", null, EXPIRES_AT));
+    }
+
+    @Test
+    void serveStaleToken() throws Exception {
+        GatedSigner signer = new GatedSigner();
+        TokenFactory factory = new TokenFactory(signer);
+        SigningLimiter limiter = SigningLimiter.builder().concurrency(1).maxQueued(0).build();
+        String token = limiter.sign(factory, "myid", null, EXPIRES_AT);
+
+        signer.close();
+        CompletableFuture<String> blocked = signBlocked(limiter, factory, signer, "other");
+        Assertions.assertSame(token, limiter.sign(factory, "myid", null, EXPIRES_AT));
+        Assertions.assertEquals(1, limiter.getStaleCount());
+        // tokens with a JWT ID are never shared
+        Assertions.assertThrows(SigningRejectedException.class,
+                () -> limiter.sign(factory, "myid", null, TokenFactory.newJwtId(), EXPIRES_AT));
+
+        signer.open();
+        blocked.get(10, TimeUnit.SECONDS);
+        // not under pressure, a new token is signed
+        Assertions.assertEquals(2, limiter.getAdmittedCount());
+    }
+
+    @Test
+    void staleTokenMustRemainValid() throws Exception {
+        GatedSigner signer = new GatedSigner();
+        TokenFactory factory = new TokenFactory(signer);
+        SigningLimiter limiter = SigningLimiter.builder().concurrency(1).maxQueued(0).minRemaining(Duration.ofHours(2)).build();
+        limiter.sign(factory, "myid", null, EXPIRES_AT);
+
+        signer.close();
+        CompletableFuture<String> blocked = signBlocked(limiter, factory, signer, "other");
+        Assertions.assertThrows(SigningRejectedException.class, () -> limiter.sign(factory, "myid", null, EXPIRES_AT));
+        signer.open();
+        blocked.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void staleTokenMustNotOutliveRequest() throws Exception {
+        GatedSigner signer = new GatedSigner();
+        TokenFactory factory = new TokenFactory(signer);
+        SigningLimiter limiter = SigningLimiter.builder().concurrency(1).maxQueued(0).build();
+        limiter.sign(factory, "myid", null, EXPIRES_AT);
+
+        signer.close();
+        CompletableFuture<String> blocked = signBlocked(limiter, factory, signer, "other");
+        // the cached token is valid for 1 hour, longer than asked
+        Assertions.assertThrows(SigningRejectedException.class,
+                () -> limiter.sign(factory, "myid", null, Instant.now().plus(5, ChronoUnit.MINUTES)));
+        Assertions.assertEquals(0, limiter.getStaleCount());
+        signer.open();
+        blocked.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void waitUntilDeadline() throws Exception {
+        GatedSigner signer = new GatedSigner();
+        TokenFactory factory = new TokenFactory(signer);
+        SigningLimiter limiter = SigningLimiter.builder().concurrency(1).maxQueued(10).build();
+        signer.close();
+        CompletableFuture<String> blocked = signBlocked(limiter, factory, signer, "first");
+
+        long start = System.nanoTime();
+        Assertions.assertThrows(SigningRejectedException.class,
+                () -> limiter.sign(factory, "second", null, null, EXPIRES_AT, Duration.ofMillis(100)));
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        Assertions.assertEquals(0, limiter.getQueueDepth());
+
+        // a waiting caller takes the slot once free
+        CompletableFuture<String> queued = signAsync(limiter, factory, "third", Duration.ofSeconds(10));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (limiter.getQueueDepth() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(1, limiter.getQueueDepth());
+        signer.open();
+        Assertions.assertNotNull(blocked.get(10, TimeUnit.SECONDS));
+        Assertions.assertNotNull(queued.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, limiter.getAdmittedCount());
+        Assertions.assertTrue(limiter.getMeanWaitMicros() > 0);
+    }
+
+    @Test
+    void rejectOnExpectedWait() throws Exception {
+        GatedSigner signer = new GatedSigner();
+        TokenFactory factory = new TokenFactory(signer);
+        SigningLimiter limiter = SigningLimiter.builder().concurrency(1).maxQueued(10).build();
+        // one signature sets the expected signing time, well above a zero wait
+        limiter.sign(factory, null, null, EXPIRES_AT);
+
+        signer.close();
+        CompletableFuture<String> blocked = signBlocked(limiter, factory, signer, "first");
+        long start = System.nanoTime();
+        SigningRejectedException e = Assertions.assertThrows(SigningRejectedException.class,
+                () -> limiter.sign(factory, "second", null, null, EXPIRES_AT, Duration.ZERO));
+        Assertions.assertTrue(e.getMessage().contains("expected wait"));
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        signer.open();
+        blocked.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,103 @@
+package com.verbatim.client.auth;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Objects;
+
+class SimpleTokenMetricsTest {
+
+    @Test
+    void record() {
+        SimpleTokenMetrics metrics = new SimpleTokenMetrics();
+        metrics.keyLoaded(1000);
+        metrics.keyParsed("kid", 1000);
+        metrics.keyParseCacheHit("kid");
+        metrics.keyParseCacheHit("kid");
+        metrics.tokenCacheHit();
+        metrics.tokenCacheHit();
+        metrics.tokenCacheHit();
+        metrics.tokenCacheMiss();
+        metrics.tokenPoolHit();
+        metrics.tokenPoolMiss();
+        metrics.tokenPoolDepth("kid", 64);
+        metrics.tokenPoolDepth("kid", 63);
+        metrics.tokenPoolDepth("closed", 64);
+        metrics.tokenPoolClosed("closed");
+        metrics.signingAdmitted(2_000);
+        metrics.signingAdmitted(4_000);
+        metrics.signingRejected();
+        metrics.signingStale();
+        metrics.signingQueueDepth("signing", 3);
+        metrics.keyReloaded("kid");
+        metrics.failure(TokenMetrics.Failure.SIGN);
+        for (int i = 0; i < 99; i++) {
+            metrics.tokenSigned("kid", SigningAlgorithm.ES256, 100_000);
+        }
+        metrics.tokenSigned("kid", SigningAlgorithm.ES256, 10_000_000);
+
+        Assertions.assertEquals(1, metrics.getKeyLoadCount());
+        Assertions.assertEquals(1, metrics.getKeyParseCount());
+        Assertions.assertEquals(2, metrics.getKeyParseCacheHitCount());
+        Assertions.assertEquals(0.75, metrics.getTokenCacheHitRatio());
+        Assertions.assertEquals(1, metrics.getTokenPoolHitCount());
+        Assertions.assertEquals(1, metrics.getTokenPoolMissCount());
+        Assertions.assertEquals(Map.of("kid", 63), metrics.getTokenPoolDepths());
+        Assertions.assertEquals(2, metrics.getSigningAdmittedCount());
+        Assertions.assertEquals(1, metrics.getSigningRejectedCount());
+        Assertions.assertEquals(1, metrics.getSigningStaleCount());
+        Assertions.assertEquals(3.0, metrics.getSigningWaitMeanMicros());
+        Assertions.assertEquals(3, metrics.getSigningQueueDepths().get("signing"));
+        Assertions.assertEquals(1, metrics.getKeyReloadCount());
+        Assertions.assertEquals(1, metrics.getFailureCounts().get("SIGN"));
+        Assertions.assertEquals(0, metrics.getFailureCounts().get("VERIFY"));
+        Assertions.assertEquals(100, metrics.getSignatureCounts().get("kid (ES256)"));
+        Assertions.assertEquals(199.0, metrics.getSignatureMeanMicros().get("kid (ES256)"));
+        Assertions.assertEquals(128, metrics.getSignatureP99Micros().get("kid (ES256)"));
+        Assertions.assertTrue(metrics.toString().contains("tokenCacheHitRatio=0.750"));
+    }
+
+    @Test
+    void installed() throws TokenException {
+        SimpleTokenMetrics metrics = new SimpleTokenMetrics();
+        TokenMetrics.install(metrics);
+        try {
+            Key key = new KeyLoader().from(Objects.requireNonNull(SimpleTokenMetricsTest.class.getResourceAsStream("/demoEcKey.json"))).get();
+            TokenFactory factory = new TokenFactory(key);
+            factory.sign(Instant.now().plus(1, ChronoUnit.HOURS));
+            key.signingKey();
+
+            Assertions.assertSame(metrics, TokenMetrics.current());
+            Assertions.assertTrue(metrics.getKeyLoadCount() >= 1);
+            Assertions.assertTrue(metrics.getKeyParseCount() >= 1);
+            Assertions.assertTrue(metrics.getKeyParseCacheHitCount() >= 1);
+            Assertions.assertTrue(metrics.getSignatureCounts().get("MY_EC_KEY_ID (ES256)") >= 1);
+        } finally {
+            TokenMetrics.install(TokenMetrics.NOOP);
+        }
+    }
+
+    @Test
+    void registerMBean() throws Exception {
+        SimpleTokenMetrics metrics = new SimpleTokenMetrics();
+        metrics.registerMBean();
+        try {
+            metrics.tokenCacheMiss();
+            Object misses = ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName(SimpleTokenMetrics.OBJECT_NAME), "TokenCacheMissCount");
+            Assertions.assertEquals(1L, misses);
+        } finally {
+            metrics.unregisterMBean();
+        }
+    }
+
+    @Test
+    void installFails() {
+        Assertions.assertThrows(NullPointerException.class, () -> TokenMetrics.install(null));
+    }
+}
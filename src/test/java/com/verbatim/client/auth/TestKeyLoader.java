@@ -2,11 +2,18 @@ package com.verbatim.client.auth;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 class TestKeyLoader {
 
+    private static final String PRIVATE_KEY = "MY_SECRET_TO_TESTMY_SECRET_TO_TESTMY_SECRET_TO_TESTMY_SECRET_TO_TESTMY_SECRET_TO_TESTMY_SECRET_TO_TEST";
+    private static final String PUBLIC_KEY = "MY_PUBLIC_KEY_TO_TEST_MY_PUBLIC_KEY_TO_TEST_MY_PUBLIC_KEY_TO_TEST_MY_PUBLIC_KEY_TO_TEST_MY_PUBLIC_KEY_TO_TEST";
+
     @Test
     void fromInputStreamFails()  {
         Assertions.assertThrows(NullPointerException.class, () -> {
@@ -53,4 +60,50 @@ class TestKeyLoader {
         Assertions.assertEquals("MY_SECRET_TO_TESTMY_SECRET_TO_TESTMY_SECRET_TO_TESTMY_SECRET_TO_TESTMY_SECRET_TO_TESTMY_SECRET_TO_TEST",key.getPrivateKey());
         Assertions.assertEquals("MY_PUBLIC_KEY_TO_TEST_MY_PUBLIC_KEY_TO_TEST_MY_PUBLIC_KEY_TO_TEST_MY_PUBLIC_KEY_TO_TEST_MY_PUBLIC_KEY_TO_TEST",key.getPublicKey());
     }
-}
\ No newline at end of file
+
+    @Test
+    void fromString() {
+        Key key = new KeyLoader().from(new StringReader("\uFEFF { \"keyId\" : \"k\\u00e9y\\n\\\"\\/\", \"organizationId\":\"org\u00e9\","
+                + "\"privateKey\":\"" + PRIVATE_KEY + "\",\"publicKey\":\"" + PUBLIC_KEY + "\",\"algorithm\":null}\n")).get();
+        Assertions.assertEquals("k\u00e9y\n\"/", key.getKeyId());
+        Assertions.assertEquals("org\u00e9", key.getOrganizationId());
+        Assertions.assertEquals(PRIVATE_KEY, key.getPrivateKey());
+        Assertions.assertEquals(PUBLIC_KEY, key.getPublicKey());
+        Assertions.assertNull(key.getAlgorithm());
+    }
+
+    @Test
+    void fromFileUtf8(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("key.json");
+        Files.writeString(file, "{\"keyId\":\"cl\u00e9\",\"organizationId\":\"o\",\"privateKey\":\"" + PRIVATE_KEY + "\",\"publicKey\":\"" + PUBLIC_KEY + "\"}", StandardCharsets.UTF_8);
+        Assertions.assertEquals("cl\u00e9", new KeyLoader().from(file).get().getKeyId());
+    }
+
+    @Test
+    void fromFileNotFound(@TempDir Path directory) {
+        Assertions.assertThrows(FileNotFoundException.class, () -> new KeyLoader().from(directory.resolve("missing.json")));
+    }
+
+    @Test
+    void fromInvalidJson() {
+        assertInvalid("{\"keyId\":\"k\",\"unknown\":\"u\"}", "Unknown field \"unknown\"");
+        assertInvalid("{\"keyId\":\"k\",\"keyId\":\"k\"}", "Duplicate field \"keyId\"");
+        assertInvalid("{\"keyId\":1}", "Field \"keyId\" must be a string");
+        assertInvalid("{\"keyId\":\"k\"", "Unexpected end of input");
+        assertInvalid("{\"keyId\":\"k}", "Unterminated string");
+        assertInvalid("{\"keyId\":\"k\\x\"}", "Invalid escape sequence");
+        assertInvalid("{\"keyId\":\"k\"} {}", "Unexpected content after the key object");
+        assertInvalid("", "Unexpected end of input");
+    }
+
+    @Test
+    void fromTwice() {
+        KeyLoader loader = new KeyLoader().from(new StringReader("{}"));
+        Assertions.assertThrows(RuntimeException.class, () -> loader.from(new StringReader("{}")));
+    }
+
+    private static void assertInvalid(String json, String message) {
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class, () -> new KeyLoader().from(new StringReader(json)));
+        Assertions.assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+}
@@ -0,0 +1,23 @@
+package com.verbatim.client.auth;
+
+import java.util.Objects;
+
+/**
+ * The demo keys of the test resources.
+ */
+final class TestKeys {
+
+    private TestKeys() {
+    }
+
+    /**
+     * @return the RSA demo key, {@code MY_KEY_ID}.
+     */
+    static Key demoKey() {
+        return new KeyLoader().from(Objects.requireNonNull(TestKeys.class.getResourceAsStream("/demoKey.json"))).get();
+    }
+
+    static TokenFactory demoFactory() throws TokenException {
+        return new TokenFactory(demoKey());
+    }
+}
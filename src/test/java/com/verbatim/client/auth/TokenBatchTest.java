@@ -0,0 +1,78 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+class TokenBatchTest {
+
+    private static TokenFactory demoFactory() throws TokenException {
+        return new TokenFactory(new KeyLoader().from(Objects.requireNonNull(TokenBatchTest.class.getResourceAsStream("/demoKey.json"))).get());
+    }
+
+    @Test
+    void claims() {
+        Assertions.assertSame(TokenClaims.none(), TokenClaims.of(null, null));
+        Assertions.assertEquals(TokenClaims.of("id", "email"), TokenClaims.of("id", "email"));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenClaims.of(" ", null));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenClaims.of(null, " "));
+    }
+
+    @Test
+    void signFails() throws TokenException {
+        TokenBatch batch = new TokenBatch(demoFactory());
+        Assertions.assertThrows(NullPointerException.class, () -> new TokenBatch(null));
+        Assertions.assertThrows(NullPointerException.class, () -> batch.sign((List<TokenClaims>) null, Instant.now().plus(1, ChronoUnit.HOURS)));
+        Assertions.assertThrows(NullPointerException.class, () -> batch.sign(Collections.emptyList(), null));
+        Assertions.assertThrows(RuntimeException.class, () -> batch.sign(Collections.emptyList(), Instant.now().minus(1, ChronoUnit.HOURS)));
+    }
+
+    @Test
+    void sign() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            TokenBatch batch = new TokenBatch(demoFactory(), executor);
+            List<TokenClaims> claims = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                claims.add(TokenClaims.of("user" + i, "user" + i + "@verbatim-ai.com"));
+            }
+            claims.add(25, null);
+
+            List<TokenBatch.Result> results = batch.sign(claims, Instant.now().plus(1, ChronoUnit.HOURS));
+            Assertions.assertEquals(51, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                TokenBatch.Result result = results.get(i);
+                if (i == 25) {
+                    Assertions.assertFalse(result.isSuccess());
+                    Assertions.assertNull(result.getToken());
+                    Assertions.assertNotNull(result.getError());
+                    continue;
+                }
+                Assertions.assertTrue(result.isSuccess());
+                Assertions.assertSame(claims.get(i), result.getClaims());
+                Assertions.assertEquals(claims.get(i).getUserId(), JWT.decode(result.getToken()).getClaim("uid").asString());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void signStream() throws TokenException {
+        TokenBatch batch = new TokenBatch(demoFactory());
+        List<TokenBatch.Result> results = batch.sign(IntStream.range(0, 10).mapToObj(i -> TokenClaims.of("user" + i, null)),
+                Instant.now().plus(1, ChronoUnit.HOURS));
+        Assertions.assertEquals(10, results.size());
+        Assertions.assertEquals("user9", JWT.decode(results.get(9).getToken()).getClaim("uid").asString());
+    }
+}
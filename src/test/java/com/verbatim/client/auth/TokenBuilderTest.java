@@ -1,5 +1,6 @@
 package com.verbatim.client.auth;
 
+import com.auth0.jwt.JWT;
 import lombok.extern.java.Log;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -23,6 +24,12 @@ class TokenBuilderTest {
         Assertions.assertThrows(NullPointerException.class, () -> {
             new TokenBuilder().expiresAt(null);
         });
+        Assertions.assertThrows(RuntimeException.class, () -> {
+            new TokenBuilder().expiresAt(Instant.now().minusSeconds(60));
+        });
+        Assertions.assertThrows(RuntimeException.class, () -> {
+            new TokenBuilder().expiresAt(Instant.now().plus(2, ChronoUnit.DAYS));
+        });
     }
 
     @Test
@@ -45,6 +52,27 @@ class TokenBuilderTest {
         });
     }
 
+    @Test
+    void jwtId() {
+        Assertions.assertThrows(NullPointerException.class, () -> {
+            new TokenBuilder().jwtId(null);
+        });
+        Assertions.assertThrows(RuntimeException.class, () -> {
+            new TokenBuilder().jwtId("  ");
+        });
+    }
+
+    @Test
+    void clockAfterExpiresAt() throws TokenException {
+        MutableClock clock = new MutableClock(Instant.now().plus(30, ChronoUnit.DAYS));
+        Instant expiresAt = clock.instant().plus(1, ChronoUnit.HOURS);
+        String token = new TokenBuilder().key(TestKeys.demoKey()).clock(clock).expiresAt(expiresAt).build();
+        Assertions.assertEquals(expiresAt.getEpochSecond(), JWT.decode(token).getExpiresAtAsInstant().getEpochSecond());
+        // valid when set, the expiration time is checked again against the clock set afterwards
+        Assertions.assertThrows(RuntimeException.class,
+                () -> new TokenBuilder().key(TestKeys.demoKey()).expiresAt(Instant.now().plus(1, ChronoUnit.HOURS)).clock(clock).build());
+    }
+
     @Test
     void buildFail() {
         Assertions.assertThrows(TokenException.class, () -> {
@@ -86,9 +114,11 @@ class TokenBuilderTest {
                 .expiresAt(Instant.now().plus(1, ChronoUnit.DAYS))
                 .userEmail("myemail")
                 .userId("myid")
+                .jwtId("myjti")
                 .build();
         Assertions.assertNotNull(token);
         Assertions.assertTrue(token.length() > 100);
+        Assertions.assertEquals("myjti", JWT.decode(token).getId());
         log.info("test token: " + token);
     }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TokenCacheTest {
+
+    private static TokenFactory demoFactory() throws TokenException {
+        return new TokenFactory(new KeyLoader().from(Objects.requireNonNull(TokenCacheTest.class.getResourceAsStream("/demoKey.json"))).get());
+    }
+
+    @Test
+    void builderFails() {
+        Assertions.assertThrows(RuntimeException.class, () -> TokenCache.builder().maximumSize(0));
+        Assertions.assertThrows(NullPointerException.class, () -> TokenCache.builder().lifetime(null));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenCache.builder().lifetime(Duration.ZERO));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenCache.builder().lifetime(Duration.ofDays(2)));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenCache.builder().refreshAhead(Duration.ofSeconds(-1)));
+        Assertions.assertThrows(NullPointerException.class, () -> TokenCache.builder().executor(null));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenCache.builder()
+                .lifetime(Duration.ofMinutes(1))
+                .refreshAhead(Duration.ofMinutes(1))
+                .build());
+    }
+
+    @Test
+    void get() throws TokenException {
+        TokenFactory factory = demoFactory();
+        TokenCache cache = TokenCache.builder().build();
+        String token = cache.get(factory, "myid", "myemail");
+        Assertions.assertSame(token, cache.get(factory, "myid", "myemail"));
+        Assertions.assertEquals("myid", JWT.decode(token).getClaim("uid").asString());
+
+        String other = cache.get(factory, "otherid", null);
+        Assertions.assertNotEquals(token, other);
+        Assertions.assertSame(other, cache.get(factory, "otherid", null));
+        Assertions.assertEquals(2, cache.size());
+    }
+
+    @Test
+    void evicts() throws TokenException {
+        TokenFactory factory = demoFactory();
+        TokenCache cache = TokenCache.builder().maximumSize(2).build();
+        String first = cache.get(factory, "user1", null);
+        cache.get(factory, "user2", null);
+        cache.get(factory, "user1", null);
+        cache.get(factory, "user3", null);
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertSame(first, cache.get(factory, "user1", null));
+    }
+
+    @Test
+    void invalidate() throws TokenException {
+        TokenFactory factory = demoFactory();
+        TokenCache cache = TokenCache.builder().build();
+        cache.get(factory);
+        cache.get(factory, "myid", null);
+        cache.invalidate("OTHER_KEY_ID");
+        Assertions.assertEquals(2, cache.size());
+        cache.invalidate("MY_KEY_ID");
+        Assertions.assertEquals(0, cache.size());
+        cache.get(factory);
+        cache.invalidateAll();
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void refreshAhead() throws Exception {
+        AtomicInteger refreshes = new AtomicInteger();
+        MutableClock clock = new MutableClock(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        TokenFactory factory = new TokenFactory(demoFactory().getSigningKey(), clock);
+        TokenCache cache = TokenCache.builder()
+                .lifetime(Duration.ofSeconds(4))
+                .refreshAhead(Duration.ofSeconds(2))
+                .executor(command -> {
+                    refreshes.incrementAndGet();
+                    command.run();
+                })
+                .clock(clock)
+                .build();
+        String token = cache.get(factory, "myid", null);
+        clock.advance(Duration.ofMillis(1900));
+        Assertions.assertSame(token, cache.get(factory, "myid", null));
+        Assertions.assertEquals(0, refreshes.get());
+
+        clock.advance(Duration.ofMillis(200));
+        // still valid, returned while a new token is signed in the background
+        Assertions.assertSame(token, cache.get(factory, "myid", null));
+        Assertions.assertEquals(1, refreshes.get());
+        Assertions.assertNotEquals(token, cache.get(factory, "myid", null));
+    }
+
+    @Test
+    void clock() throws TokenException {
+        MutableClock clock = new MutableClock(Instant.now());
+        TokenFactory factory = new TokenFactory(demoFactory().getSigningKey(), clock);
+        TokenCache cache = TokenCache.builder()
+                .lifetime(Duration.ofMinutes(10))
+                .refreshAhead(Duration.ofMinutes(1))
+                .executor(Runnable::run)
+                .clock(clock)
+                .build();
+        String token = cache.get(factory);
+        clock.advance(Duration.ofMinutes(8));
+        Assertions.assertSame(token, cache.get(factory));
+
+        // in the refresh-ahead window: returned once more while the next token is signed
+        clock.advance(Duration.ofMinutes(1).plusSeconds(1));
+        Assertions.assertSame(token, cache.get(factory));
+        String refreshed = cache.get(factory);
+        Assertions.assertNotEquals(token, refreshed);
+        Assertions.assertEquals(clock.instant().getEpochSecond(), JWT.decode(refreshed).getIssuedAtAsInstant().getEpochSecond());
+    }
+
+    @Test
+    void getAsync() throws Exception {
+        TokenFactory factory = demoFactory();
+        TokenCache cache = TokenCache.builder().build();
+        CompletableFuture<String> first = cache.getAsync(factory, "myid", null);
+        String token = first.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals("myid", JWT.decode(token).getClaim("uid").asString());
+
+        CompletableFuture<String> cached = cache.getAsync(factory, "myid", null);
+        Assertions.assertTrue(cached.isDone());
+        Assertions.assertSame(token, cached.join());
+        Assertions.assertSame(token, cache.get(factory, "myid", null));
+    }
+
+    @Test
+    void getAsyncFails() {
+        TokenCache cache = TokenCache.builder().executor(command -> {
+            throw new RejectedExecutionException("full");
+        }).build();
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> cache.getAsync(demoFactory(), "myid", null).get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(TokenException.class, e.getCause());
+    }
+}
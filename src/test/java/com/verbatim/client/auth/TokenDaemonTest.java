@@ -0,0 +1,136 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+class TokenDaemonTest {
+
+    @TempDir
+    Path directory;
+
+    private static TokenFactory demoFactory() throws TokenException {
+        return new TokenFactory(new KeyLoader().from(Objects.requireNonNull(TokenDaemonTest.class.getResourceAsStream("/demoEcKey.json"))).get());
+    }
+
+    @Test
+    void fetch() throws Exception {
+        Path socket = directory.resolve("token.sock");
+        try (TokenDaemon daemon = TokenDaemon.start(socket, demoFactory(), TokenCache.builder().build())) {
+            Assertions.assertTrue(Files.exists(daemon.getSocket()));
+
+            String token = TokenDaemon.fetch(socket, "my id", "me@example.com", null);
+            DecodedJWT jwt = JWT.decode(token);
+            Assertions.assertEquals("my id", jwt.getClaim("uid").asString());
+            Assertions.assertEquals("me@example.com", jwt.getClaim("email").asString());
+            // served from the cache
+            Assertions.assertEquals(token, TokenDaemon.fetch(socket, "my id", "me@example.com", null));
+
+            DecodedJWT shortLived = JWT.decode(TokenDaemon.fetch(socket, null, null, Duration.ofMinutes(5)));
+            Assertions.assertNull(shortLived.getClaim("uid").asString());
+            Assertions.assertEquals(300, shortLived.getExpiresAtAsInstant().getEpochSecond() - shortLived.getIssuedAtAsInstant().getEpochSecond(), 1);
+
+            TokenException e = Assertions.assertThrows(TokenException.class, () -> TokenDaemon.fetch(socket, null, null, Duration.ofDays(2)));
+            Assertions.assertTrue(e.getMessage().contains("1 day"), e.getMessage());
+        }
+        Assertions.assertFalse(Files.exists(socket));
+        Assertions.assertThrows(IOException.class, () -> TokenDaemon.fetch(socket, null, null, null));
+    }
+
+    @Test
+    void malformedRequest() throws Exception {
+        Path socket = directory.resolve("malformed.sock");
+        try (TokenDaemon daemon = TokenDaemon.start(socket, demoFactory(), TokenCache.builder().build());
+             SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            writer.write("TOKEN uid=%zz\nPING\n");
+            writer.flush();
+            // answered, and the connection stays open
+            Assertions.assertEquals("ERR invalid parameter uid=%zz", reader.readLine());
+            Assertions.assertEquals("OK pong", reader.readLine());
+        }
+    }
+
+    @Test
+    void answer() throws Exception {
+        try (TokenDaemon daemon = TokenDaemon.start(directory.resolve("answer.sock"), demoFactory(), TokenCache.builder().build())) {
+            Assertions.assertEquals("OK pong", daemon.answer("PING"));
+            Assertions.assertTrue(daemon.answer("TOKEN uid=42").startsWith("OK ey"));
+            Assertions.assertTrue(daemon.answer("HELLO").startsWith("ERR "));
+            Assertions.assertTrue(daemon.answer("TOKEN uid").startsWith("ERR "));
+            Assertions.assertTrue(daemon.answer("TOKEN foo=bar").startsWith("ERR "));
+            Assertions.assertTrue(daemon.answer("TOKEN ttl=soon").startsWith("ERR "));
+            Assertions.assertEquals("ERR invalid parameter uid=%zz", daemon.answer("TOKEN uid=%zz"));
+        }
+    }
+
+    @Test
+    void socketPermissions() throws Exception {
+        Path socket = directory.resolve("private.sock");
+        Files.writeString(socket, "not a socket");
+        Assertions.assertThrows(IOException.class, () -> TokenDaemon.start(socket, demoFactory(), TokenCache.builder().build()));
+        Assertions.assertEquals("not a socket", Files.readString(socket));
+        Files.delete(socket);
+
+        try (TokenDaemon daemon = TokenDaemon.start(socket, demoFactory(), TokenCache.builder().build())) {
+            Assertions.assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket)));
+            Assertions.assertNotNull(TokenDaemon.fetch(socket, null, null, null));
+            // the temporary directory the socket is bound in is removed
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertEquals(1, files.count());
+            }
+        }
+        // an existing socket is replaced
+        TokenDaemon.start(socket, demoFactory(), TokenCache.builder().build()).close();
+        try (TokenDaemon daemon = TokenDaemon.start(socket, demoFactory(), TokenCache.builder().build())) {
+            Assertions.assertNotNull(TokenDaemon.fetch(socket, null, null, null));
+        }
+    }
+
+    @Test
+    void readLine() throws Exception {
+        StringBuilder buffer = new StringBuilder();
+        Reader reader = new StringReader("PING\r\nTOKEN\n" + "x".repeat(TokenDaemon.MAX_LINE_LENGTH) + "\n");
+        Assertions.assertEquals("PING", TokenDaemon.readLine(reader, buffer));
+        Assertions.assertEquals("TOKEN", TokenDaemon.readLine(reader, buffer));
+        Assertions.assertEquals(TokenDaemon.MAX_LINE_LENGTH, TokenDaemon.readLine(reader, buffer).length());
+        Assertions.assertNull(TokenDaemon.readLine(reader, buffer));
+        // a longer line is cut as soon as it exceeds the limit
+        reader = new StringReader("x".repeat(1_000_000));
+        Assertions.assertTrue(TokenDaemon.readLine(reader, buffer).length() > TokenDaemon.MAX_LINE_LENGTH);
+        Assertions.assertTrue(buffer.length() < TokenDaemon.MAX_LINE_LENGTH + 10);
+
+        Path socket = directory.resolve("long.sock");
+        try (TokenDaemon daemon = TokenDaemon.start(socket, demoFactory(), TokenCache.builder().build())) {
+            TokenException e = Assertions.assertThrows(TokenException.class,
+                    () -> TokenDaemon.fetch(socket, "x".repeat(TokenDaemon.MAX_LINE_LENGTH), null, null));
+            Assertions.assertTrue(e.getMessage().contains("longer than"), e.getMessage());
+        }
+    }
+
+    @Test
+    void startFails() {
+        Assertions.assertThrows(NullPointerException.class, () -> TokenDaemon.start(null, demoFactory(), TokenCache.builder().build()));
+        Assertions.assertThrows(NullPointerException.class, () -> TokenDaemon.start(directory.resolve("x.sock"), null, TokenCache.builder().build()));
+        Assertions.assertThrows(IOException.class, () -> TokenDaemon.start(directory.resolve("missing").resolve("x.sock"), demoFactory(), TokenCache.builder().build()));
+    }
+}
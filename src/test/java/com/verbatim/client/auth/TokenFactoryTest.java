@@ -0,0 +1,127 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.security.interfaces.ECPublicKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class TokenFactoryTest {
+
+    private static Key demoKey() {
+        return new KeyLoader().from(Objects.requireNonNull(TokenFactoryTest.class.getResourceAsStream("/demoKey.json"))).get();
+    }
+
+    @Test
+    void createFails() {
+        Assertions.assertThrows(NullPointerException.class, () -> new TokenFactory((Key) null));
+        Assertions.assertThrows(NullPointerException.class, () -> new TokenFactory((SigningKey) null));
+        Key key = new KeyLoader().from(Objects.requireNonNull(TokenFactoryTest.class.getResourceAsStream("/sampleKey.json"))).get();
+        Assertions.assertThrows(TokenException.class, () -> new TokenFactory(key));
+    }
+
+    @Test
+    void signFails() throws TokenException {
+        TokenFactory factory = new TokenFactory(demoKey());
+        Assertions.assertThrows(TokenException.class, () -> factory.sign(null));
+        Assertions.assertThrows(RuntimeException.class, () -> factory.sign(Instant.now().minus(1, ChronoUnit.HOURS)));
+        Assertions.assertThrows(RuntimeException.class, () -> factory.sign(Instant.now().plus(2, ChronoUnit.DAYS)));
+        Assertions.assertThrows(RuntimeException.class, () -> factory.sign(" ", null, Instant.now().plus(1, ChronoUnit.HOURS)));
+        Assertions.assertThrows(RuntimeException.class, () -> factory.sign(null, " ", Instant.now().plus(1, ChronoUnit.HOURS)));
+        Assertions.assertThrows(RuntimeException.class, () -> factory.sign(null, null, " ", Instant.now().plus(1, ChronoUnit.HOURS)));
+    }
+
+    @Test
+    void sign() throws TokenException {
+        TokenFactory factory = new TokenFactory(demoKey());
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+        DecodedJWT jwt = JWT.decode(factory.sign("myid", "myemail", expiresAt));
+        Assertions.assertEquals("verbatim_client", jwt.getIssuer());
+        Assertions.assertEquals("MY_ORG_ID", jwt.getSubject());
+        Assertions.assertEquals("MY_KEY_ID", jwt.getKeyId());
+        Assertions.assertEquals("RS512", jwt.getAlgorithm());
+        Assertions.assertEquals("myid", jwt.getClaim("uid").asString());
+        Assertions.assertEquals("myemail", jwt.getClaim("email").asString());
+        Assertions.assertEquals(expiresAt.getEpochSecond(), jwt.getExpiresAtAsInstant().getEpochSecond());
+
+        Assertions.assertNull(jwt.getId());
+
+        String jwtId = TokenFactory.newJwtId();
+        Assertions.assertEquals(jwtId, JWT.decode(factory.sign("myid", null, jwtId, expiresAt)).getId());
+        Assertions.assertNotEquals(jwtId, TokenFactory.newJwtId());
+
+        jwt = JWT.decode(factory.sign(expiresAt));
+        Assertions.assertTrue(jwt.getClaim("uid").isMissing());
+        Assertions.assertTrue(jwt.getClaim("email").isMissing());
+    }
+
+    @Test
+    void signConcurrently() throws Exception {
+        TokenFactory factory = new TokenFactory(demoKey());
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String userId = "user" + i;
+                futures.add(executor.submit(() -> factory.sign(userId, null, expiresAt)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Assertions.assertEquals("user" + i, JWT.decode(futures.get(i).get()).getClaim("uid").asString());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void signEc() throws TokenException {
+        Key key = new KeyLoader().from(Objects.requireNonNull(TokenFactoryTest.class.getResourceAsStream("/demoEcKey.json"))).get();
+        TokenFactory factory = new TokenFactory(key);
+        Assertions.assertEquals(SigningAlgorithm.ES256, factory.getSigningKey().getSigningAlgorithm());
+        String token = factory.sign("myid", null, Instant.now().plus(1, ChronoUnit.HOURS));
+
+        DecodedJWT jwt = JWT.require(Algorithm.ECDSA256((ECPublicKey) factory.getSigningKey().getPublicKey(), null))
+                .withIssuer("verbatim_client")
+                .build()
+                .verify(token);
+        Assertions.assertEquals("ES256", jwt.getAlgorithm());
+        Assertions.assertEquals("MY_EC_KEY_ID", jwt.getKeyId());
+        Assertions.assertEquals("myid", jwt.getClaim("uid").asString());
+
+        key = new KeyLoader().from(Objects.requireNonNull(TokenFactoryTest.class.getResourceAsStream("/demoEc384Key.json"))).get();
+        factory = new TokenFactory(key);
+        Assertions.assertEquals("ES384", JWT.decode(factory.sign(Instant.now().plus(1, ChronoUnit.HOURS))).getAlgorithm());
+    }
+
+    @Test
+    void signWithAlgorithm() throws TokenException {
+        Key key = demoKey();
+        key.algorithm = "RS256";
+        Assertions.assertEquals("RS256", JWT.decode(new TokenFactory(key).sign(Instant.now().plus(1, ChronoUnit.HOURS))).getAlgorithm());
+
+        Key mismatch = demoKey();
+        mismatch.algorithm = "ES256";
+        Assertions.assertThrows(TokenException.class, () -> new TokenFactory(mismatch));
+
+        Key ecMismatch = new KeyLoader().from(Objects.requireNonNull(TokenFactoryTest.class.getResourceAsStream("/demoEcKey.json"))).get();
+        ecMismatch.algorithm = "ES384";
+        Assertions.assertThrows(TokenException.class, () -> new TokenFactory(ecMismatch));
+
+        Assertions.assertThrows(RuntimeException.class, () -> new KeyLoader().from(new StringReader("{"
+                + "\"keyId\":\"kid\",\"organizationId\":\"oid\",\"algorithm\":\"EdDSA\","
+                + "\"privateKey\":\"" + key.getPrivateKey().replace("\n", "\\n") + "\","
+                + "\"publicKey\":\"" + key.getPublicKey().replace("\n", "\\n") + "\"}")).get());
+    }
+}
@@ -0,0 +1,84 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+class TokenPoolTest {
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void builderFails() throws TokenException {
+        TokenFactory factory = TestKeys.demoFactory();
+        Assertions.assertThrows(NullPointerException.class, () -> TokenPool.builder(null));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenPool.builder(factory).targetSize(0));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenPool.builder(factory).lifetime(Duration.ofDays(2)));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenPool.builder(factory).minRemaining(Duration.ofSeconds(-1)));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenPool.builder(factory).name(" "));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenPool.builder(factory).minRemaining(Duration.ofHours(1)).build());
+    }
+
+    @Test
+    void take() throws Exception {
+        try (TokenPool pool = TokenPool.builder(TestKeys.demoFactory()).claims(TokenClaims.of("myid", null)).targetSize(8).build();
+             TokenPool other = TokenPool.builder(TestKeys.demoFactory()).targetSize(1).build()) {
+            Assertions.assertTrue(pool.getName().startsWith("MY_KEY_ID#"));
+            Assertions.assertNotEquals(pool.getName(), other.getName());
+            await(() -> pool.depth() == 8);
+
+            Set<String> jwtIds = new HashSet<>();
+            for (int i = 0; i < 20; i++) {
+                DecodedJWT jwt = JWT.decode(pool.take());
+                Assertions.assertEquals("myid", jwt.getClaim("uid").asString());
+                Assertions.assertTrue(jwt.getClaim("email").isMissing());
+                jwtIds.add(jwt.getId());
+            }
+            // every token is unique, including those signed inline once the pool is empty
+            Assertions.assertEquals(20, jwtIds.size());
+            await(() -> pool.depth() == 8);
+        }
+    }
+
+    @Test
+    void takeSkipsExpiringTokens() throws Exception {
+        MutableClock clock = new MutableClock(Instant.now());
+        TokenFactory factory = new TokenFactory(TestKeys.demoFactory().getSigningKey(), clock);
+        try (TokenPool pool = TokenPool.builder(factory)
+                .targetSize(4)
+                .lifetime(Duration.ofMinutes(10))
+                .minRemaining(Duration.ofMinutes(5))
+                .name("expiring")
+                .build()) {
+            await(() -> pool.depth() == 4);
+            clock.advance(Duration.ofMinutes(6));
+
+            Instant expiresAt = JWT.decode(pool.take()).getExpiresAtAsInstant();
+            Assertions.assertTrue(expiresAt.isAfter(clock.instant().plus(Duration.ofMinutes(5))));
+            // the expiring tokens are replaced in the background
+            await(() -> pool.depth() == 4);
+        }
+    }
+
+    @Test
+    void close() throws Exception {
+        TokenPool pool = TokenPool.builder(TestKeys.demoFactory()).targetSize(2).build();
+        await(() -> pool.depth() == 2);
+        pool.close();
+        Assertions.assertEquals(0, pool.depth());
+        Assertions.assertNotNull(JWT.decode(pool.take()).getId());
+    }
+}
@@ -0,0 +1,151 @@
+package com.verbatim.client.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+class TokenVerifierTest {
+
+    private static Key key(String resource) {
+        return new KeyLoader().from(Objects.requireNonNull(TokenVerifierTest.class.getResourceAsStream(resource))).get();
+    }
+
+    @Test
+    void builderFails() {
+        Assertions.assertThrows(RuntimeException.class, () -> TokenVerifier.builder().build());
+        Assertions.assertThrows(RuntimeException.class, () -> TokenVerifier.builder().leeway(Duration.ofSeconds(-1)));
+        Assertions.assertThrows(RuntimeException.class, () -> TokenVerifier.builder().maximumCacheSize(-1));
+        Assertions.assertThrows(TokenException.class, () -> TokenVerifier.builder().publicKey("kid", "MY_PUBLIC_KEY"));
+    }
+
+    @Test
+    void verify() throws TokenException {
+        Key key = key("/demoKey.json");
+        Key ecKey = key("/demoEcKey.json");
+        TokenVerifier verifier = TokenVerifier.builder().key(key).key(ecKey).build();
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+
+        DecodedJWT jwt = verifier.verify(new TokenFactory(key).sign("myid", null, expiresAt));
+        Assertions.assertEquals("MY_KEY_ID", jwt.getKeyId());
+        Assertions.assertEquals("myid", jwt.getClaim("uid").asString());
+
+        String ecToken = new TokenFactory(ecKey).sign(null, "myemail", expiresAt);
+        Assertions.assertEquals("myemail", verifier.verify(ecToken).getClaim("email").asString());
+        // served from the cache of verified tokens
+        Assertions.assertEquals("myemail", verifier.verify(ecToken).getClaim("email").asString());
+
+        TokenVerifier publicKeyVerifier = TokenVerifier.builder().publicKey("MY_KEY_ID", key.getPublicKey()).maximumCacheSize(0).build();
+        Assertions.assertEquals("MY_KEY_ID", publicKeyVerifier.verify(new TokenFactory(key).sign(expiresAt)).getKeyId());
+    }
+
+    @Test
+    void verifyWithKeyRing() throws TokenException {
+        Key key = key("/demoKey.json");
+        KeyRing keyRing = new KeyRing();
+        TokenVerifier verifier = TokenVerifier.builder().keyRing(keyRing).build();
+        String token = new TokenFactory(key).sign(Instant.now().plus(1, ChronoUnit.HOURS));
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(token));
+        keyRing.add(key);
+        Assertions.assertEquals("MY_ORG_ID", verifier.verify(token).getSubject());
+    }
+
+    @Test
+    void verifyFollowsKeyRing() throws Exception {
+        Key key = key("/demoKey.json");
+        KeyRing keyRing = new KeyRing().add(key);
+        TokenVerifier verifier = TokenVerifier.builder().keyRing(keyRing).build();
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+        String token = new TokenFactory(key).sign(expiresAt);
+        verifier.verify(token);
+
+        // revoked: rejected, even though verified before
+        keyRing.remove("MY_KEY_ID");
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(token));
+
+        // rotated under the same key ID: the tokens of the new key are accepted, those of the old one rejected
+        String json;
+        try (InputStream inputStream = Objects.requireNonNull(TokenVerifierTest.class.getResourceAsStream("/demoEcKey.json"))) {
+            json = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).replace("MY_EC_KEY_ID", "MY_KEY_ID");
+        }
+        Key rotated = new KeyLoader().from(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))).get();
+        keyRing.add(key);
+        verifier.verify(token);
+        keyRing.add(rotated);
+        Assertions.assertEquals("MY_KEY_ID", verifier.verify(new TokenFactory(rotated).sign(expiresAt)).getKeyId());
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    void verifyWithClock() throws TokenException {
+        Key key = key("/demoKey.json");
+        MutableClock clock = new MutableClock(Instant.now());
+        String token = new TokenFactory(key.signingKey(), clock).sign(clock.instant().plusSeconds(60));
+        TokenVerifier verifier = TokenVerifier.builder().key(key).leeway(Duration.ZERO).clock(clock).build();
+        verifier.verify(token);
+
+        // the cached verification expires with the token
+        clock.advance(Duration.ofSeconds(61));
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(token));
+        Assertions.assertThrows(TokenException.class,
+                () -> TokenVerifier.builder().key(key).leeway(Duration.ZERO).clock(clock).build().verify(token));
+    }
+
+    @Test
+    void verifyFails() throws TokenException {
+        Key key = key("/demoKey.json");
+        Key ecKey = key("/demoEcKey.json");
+        TokenVerifier verifier = TokenVerifier.builder().key(key).build();
+        Instant now = Instant.now();
+        SigningKey signingKey = key.signingKey();
+
+        Assertions.assertThrows(NullPointerException.class, () -> verifier.verify(null));
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify("not a token"));
+        // unknown key
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(new TokenFactory(ecKey).sign(now.plusSeconds(60))));
+
+        // tampered signature
+        String token = new TokenFactory(key).sign(now.plusSeconds(60));
+        String tampered = token.substring(0, token.length() - 4) + (token.endsWith("AAAA") ? "BBBB" : "AAAA");
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(tampered));
+
+        // expired beyond the leeway
+        String expired = JWT.create().withIssuer("verbatim_client").withKeyId("MY_KEY_ID")
+                .withIssuedAt(now.minusSeconds(7200)).withExpiresAt(now.minusSeconds(3600))
+                .sign(signingKey.getAlgorithm());
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(expired));
+
+        // expired within the leeway
+        String justExpired = JWT.create().withIssuer("verbatim_client").withKeyId("MY_KEY_ID")
+                .withIssuedAt(now.minusSeconds(60)).withExpiresAt(now.minusSeconds(5))
+                .sign(signingKey.getAlgorithm());
+        Assertions.assertEquals("MY_KEY_ID", verifier.verify(justExpired).getKeyId());
+
+        // wrong issuer
+        String otherIssuer = JWT.create().withIssuer("other").withKeyId("MY_KEY_ID")
+                .withIssuedAt(now).withExpiresAt(now.plusSeconds(60))
+                .sign(signingKey.getAlgorithm());
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(otherIssuer));
+
+        // missing issue time
+        String noIssuedAt = JWT.create().withIssuer("verbatim_client").withKeyId("MY_KEY_ID")
+                .withExpiresAt(now.plusSeconds(60))
+                .sign(signingKey.getAlgorithm());
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(noIssuedAt));
+
+        // algorithm confusion
+        String hmac = JWT.create().withIssuer("verbatim_client").withKeyId("MY_KEY_ID")
+                .withIssuedAt(now).withExpiresAt(now.plusSeconds(60))
+                .sign(Algorithm.HMAC512(key.getPublicKey()));
+        Assertions.assertThrows(TokenException.class, () -> verifier.verify(hmac));
+    }
+}
@@ -0,0 +1,83 @@
+package com.verbatim.client.auth;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.Objects;
+
+class WarmUpTest {
+
+    private static String resource(String name) throws IOException {
+        try (InputStream inputStream = Objects.requireNonNull(WarmUpTest.class.getResourceAsStream(name))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The demo key, with the public key of another RSA key pair.
+     */
+    private static String mismatchedKeyJson() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        String publicKey = "-----BEGIN PUBLIC KEY-----\\n"
+                + Base64.getEncoder().encodeToString(generator.generateKeyPair().getPublic().getEncoded())
+                + "\\n-----END PUBLIC KEY-----\\n";
+        String json = resource("/demoKey.json");
+        int start = json.indexOf("\"-----BEGIN PUBLIC KEY");
+        int end = json.indexOf('"', start + 1);
+        return json.substring(0, start + 1) + publicKey + json.substring(end);
+    }
+
+    @Test
+    void run() throws Exception {
+        Key key = new KeyLoader().from(new StringReader(resource("/demoKey.json"))).get();
+        WarmUp.Report report = WarmUp.run(key, 5);
+        Assertions.assertEquals("MY_KEY_ID", report.getKeyId());
+        Assertions.assertEquals(SigningAlgorithm.RS512, report.getAlgorithm());
+        Assertions.assertTrue(report.getParseNanos() >= 0);
+        Assertions.assertTrue(report.getFirstSignNanos() > 0);
+        Assertions.assertTrue(report.getVerifyNanos() > 0);
+        Assertions.assertEquals(5, report.getSignatures());
+        Assertions.assertTrue(report.getMeanSignNanos() > 0);
+        Assertions.assertTrue(report.toString().startsWith("Warm-up of key MY_KEY_ID (RS512): parsed in "));
+
+        report = WarmUp.run(key.signingKey(), 0);
+        Assertions.assertEquals(-1, report.getParseNanos());
+        Assertions.assertEquals(-1, report.getMeanSignNanos());
+        Assertions.assertThrows(RuntimeException.class, () -> WarmUp.run(key, -1));
+    }
+
+    @Test
+    void runEc() throws Exception {
+        Key key = new KeyLoader().from(new StringReader(resource("/demoEcKey.json"))).get();
+        Assertions.assertEquals(SigningAlgorithm.ES256, WarmUp.run(key, 5).getAlgorithm());
+    }
+
+    @Test
+    void runFailsOnMismatchedKeys() throws Exception {
+        Key key = new KeyLoader().from(new StringReader(mismatchedKeyJson())).get();
+        TokenException e = Assertions.assertThrows(TokenException.class, () -> WarmUp.run(key, 5));
+        Assertions.assertTrue(e.getMessage().contains("does not match"));
+    }
+
+    @Test
+    void keyLoader() throws Exception {
+        KeyLoader loader = new KeyLoader().warmUp(3).from(new StringReader(resource("/demoKey.json")));
+        Assertions.assertNull(loader.getWarmUpReport());
+        Key key = loader.get();
+        Assertions.assertEquals(3, loader.getWarmUpReport().getSignatures());
+        Assertions.assertSame(key, loader.get());
+        Assertions.assertNull(new KeyLoader().from(new StringReader(resource("/demoKey.json"))).getWarmUpReport());
+
+        Assertions.assertThrows(RuntimeException.class, () -> new KeyLoader().warmUp(-1));
+        KeyLoader mismatched = new KeyLoader().warmUp(3).from(new StringReader(mismatchedKeyJson()));
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class, mismatched::get);
+        Assertions.assertTrue(e.getMessage().startsWith("Invalid key: "));
+    }
+}